@@ -0,0 +1,39 @@
+package com.klpbbs.service;
+
+import com.klpbbs.model.User;
+
+// 注册、升级接口的返回体，不带密码哈希和重置令牌
+public class AccountSummary {
+
+    private final Long id;
+    private final String username;
+    private final int points;
+    private final int level;
+
+    public AccountSummary(Long id, String username, Integer points, Integer level) {
+        this.id = id;
+        this.username = username;
+        this.points = points == null ? 0 : points;
+        this.level = level == null ? 1 : level;
+    }
+
+    public static AccountSummary of(User user) {
+        return new AccountSummary(user.getId(), user.getUsername(), user.getPoints(), user.getLevel());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+}
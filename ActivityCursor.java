@@ -0,0 +1,51 @@
+package com.klpbbs.support;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// 按 (时间, id) 排序的列表使用的不透明游标，内容是上一页最后一条记录的时间和 id
+public final class ActivityCursor {
+
+    private static final String PREFIX = "at:";
+
+    private final LocalDateTime time;
+    private final Long id;
+
+    private ActivityCursor(LocalDateTime time, Long id) {
+        this.time = time;
+        this.id = id;
+    }
+
+    public static String encode(LocalDateTime time, Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + time + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 为空时返回 null，表示从头开始
+    public static ActivityCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf('|');
+            if (!value.startsWith(PREFIX) || separator < 0) {
+                throw new RuntimeException("Invalid cursor");
+            }
+            return new ActivityCursor(LocalDateTime.parse(value.substring(PREFIX.length(), separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
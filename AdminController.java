@@ -1,12 +1,27 @@
 package com.klpbbs.controller.admin;
 
+import com.klpbbs.controller.PostListResponses;
+import com.klpbbs.controller.RequiresPermission;
 import com.klpbbs.entity.User;
 import com.klpbbs.entity.Post;
+import com.klpbbs.service.AuthorizationService;
+import com.klpbbs.service.EngagementCounterService;
+import com.klpbbs.service.EntityCacheService;
+import com.klpbbs.service.LeaderboardKey;
+import com.klpbbs.service.LeaderboardService;
+import com.klpbbs.service.PointCredit;
+import com.klpbbs.service.PointsLedgerService;
+import com.klpbbs.service.PostFilter;
+import com.klpbbs.service.UserExportService;
 import com.klpbbs.service.UserService;
 import com.klpbbs.service.PostService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -14,6 +29,7 @@ import java.util.Set;
 
 @RestController
 @RequestMapping("/api/admin")
+@RequiresPermission("admin")
 public class AdminController {
 
     @Autowired
@@ -22,14 +38,53 @@ public class AdminController {
     @Autowired
     private PostService postService;
 
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    @Autowired
+    private PointsLedgerService pointsLedgerService;
+
+    @Autowired
+    private AuthorizationService authorizationService;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    // 只返回导出用的标量列，按 id 游标分页
     @GetMapping("/users")
-    public ResponseEntity<?> getAllUsers() {
-        return ResponseEntity.ok(userService.findAllUsers());
+    public ResponseEntity<?> getAllUsers(@RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(userExportService.listUsers(cursor, limit));
+    }
+
+    @GetMapping("/users/export")
+    @RequiresPermission("admin.users.export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "csv") String format) {
+        boolean csv = !"ndjson".equalsIgnoreCase(format);
+        StreamingResponseBody body = out -> userExportService.exportUsers(csv, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + (csv ? "csv" : "ndjson") + ".gz\"")
+                .body(body);
+    }
+
+    // 所有榜单，包括不公开的登录时间、更新时间榜
+    @GetMapping("/leaderboards/{key}")
+    public ResponseEntity<?> getLeaderboard(@PathVariable LeaderboardKey key,
+                                            @RequestParam(defaultValue = "0") int offset,
+                                            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(leaderboardService.top(key, offset, Math.min(limit, 1000)));
     }
 
     @GetMapping("/users/search")
-    public ResponseEntity<?> searchUsers(@RequestParam String keyword) {
-        Set<Long> userIds = userService.searchUsersByKeyword(keyword);
+    public ResponseEntity<?> searchUsers(@RequestParam String keyword, @RequestParam(defaultValue = "20") int limit) {
+        List<Long> userIds = userService.searchUsersByKeyword(keyword, Math.min(limit, 200));
         return ResponseEntity.ok(userIds);
     }
 
@@ -39,33 +94,39 @@ public class AdminController {
     }
 
     @GetMapping("/users/sort/level-points-reputation")
-    public ResponseEntity<?> sortUsersByLevelAndPointsAndReputation() {
-        return ResponseEntity.ok(userService.sortUsersByLevelAndPointsAndReputation());
+    public ResponseEntity<?> sortUsersByLevelAndPointsAndReputation(@RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(userService.sortUsersByLevelAndPointsAndReputation(offset, Math.min(limit, 1000)));
     }
 
     @GetMapping("/users/sort/activity")
-    public ResponseEntity<?> sortUsersByActivity() {
-        return ResponseEntity.ok(userService.sortUsersByActivity());
+    public ResponseEntity<?> sortUsersByActivity(@RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(userService.sortUsersByActivity(offset, Math.min(limit, 1000)));
     }
 
     @GetMapping("/users/sort/social-influence")
-    public ResponseEntity<?> sortUsersBySocialInfluence() {
-        return ResponseEntity.ok(userService.sortUsersBySocialInfluence());
+    public ResponseEntity<?> sortUsersBySocialInfluence(@RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(userService.sortUsersBySocialInfluence(offset, Math.min(limit, 1000)));
     }
 
     @GetMapping("/users/sort/registration-time")
-    public ResponseEntity<?> sortUsersByRegistrationTime() {
-        return ResponseEntity.ok(userService.sortUsersByRegistrationTime());
+    public ResponseEntity<?> sortUsersByRegistrationTime(@RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(userService.sortUsersByRegistrationTime(offset, Math.min(limit, 1000)));
     }
 
     @GetMapping("/users/sort/last-login-time")
-    public ResponseEntity<?> sortUsersByLastLoginTime() {
-        return ResponseEntity.ok(userService.sortUsersByLastLoginTime());
+    public ResponseEntity<?> sortUsersByLastLoginTime(@RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(userService.sortUsersByLastLoginTime(offset, Math.min(limit, 1000)));
     }
 
     @GetMapping("/users/sort/update-time")
-    public ResponseEntity<?> sortUsersByUpdateTime() {
-        return ResponseEntity.ok(userService.sortUsersByUpdateTime());
+    public ResponseEntity<?> sortUsersByUpdateTime(@RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(userService.sortUsersByUpdateTime(offset, Math.min(limit, 1000)));
     }
 
     @GetMapping("/users/count/active")
@@ -74,44 +135,58 @@ public class AdminController {
     }
 
     @GetMapping("/posts")
-    public ResponseEntity<?> getAllPosts() {
-        return ResponseEntity.ok(postService.findAllPosts());
+    public ResponseEntity<?> getAllPosts(@RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.all(), cursor, limit, stream);
     }
 
     @GetMapping("/posts/search")
-    public ResponseEntity<?> searchPosts(@RequestParam String keyword) {
-        List<Post> posts = postService.searchPosts(keyword);
+    public ResponseEntity<?> searchPosts(@RequestParam String keyword,
+                                         @RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(defaultValue = "20") int size) {
+        Page<Post> posts = postService.searchPosts(keyword, Math.max(0, Math.min(page, 1000)), Math.max(1, Math.min(size, 100)));
         return ResponseEntity.ok(posts);
     }
 
     @GetMapping("/posts/category/{category}/status/{status}")
-    public ResponseEntity<?> getPostsByCategoryAndStatus(@PathVariable String category, @PathVariable String status) {
-        List<Post> posts = postService.getPostsByCategoryAndStatus(category, status);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByCategoryAndStatus(@PathVariable String category, @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.byCategoryAndStatus(category, status), cursor, limit, stream);
     }
 
     @GetMapping("/posts/tag/{tag}")
-    public ResponseEntity<?> getPostsByTag(@PathVariable String tag) {
-        List<Post> posts = postService.getPostsByTag(tag);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByTag(@PathVariable String tag,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.byTag(tag), cursor, limit, stream);
     }
 
     @GetMapping("/posts/author/{author}")
-    public ResponseEntity<?> getPostsByAuthor(@PathVariable String author) {
-        List<Post> posts = postService.getPostsByAuthor(author);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByAuthor(@PathVariable String author,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.byAuthor(author), cursor, limit, stream);
     }
 
     @GetMapping("/posts/status/{status}")
-    public ResponseEntity<?> getPostsByStatus(@PathVariable String status) {
-        List<Post> posts = postService.getPostsByStatus(status);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByStatus(@PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.byStatus(status), cursor, limit, stream);
     }
 
     @GetMapping("/posts/type/{type}")
-    public ResponseEntity<?> getPostsByType(@PathVariable String type) {
-        List<Post> posts = postService.getPostsByType(type);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByType(@PathVariable String type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.byType(type), cursor, limit, stream);
     }
 
     @GetMapping("/posts/sort/views")
@@ -153,4 +228,42 @@ public class AdminController {
     public ResponseEntity<?> sortPostsByCreateTime() {
         return ResponseEntity.ok(postService.sortPostsByCreateTime());
     }
-}
\ No newline at end of file
+
+    @GetMapping("/engagement/metrics")
+    public ResponseEntity<?> getEngagementMetrics() {
+        return ResponseEntity.ok(engagementCounterService.metrics());
+    }
+
+    @GetMapping("/caches/metrics")
+    public ResponseEntity<?> getCacheMetrics() {
+        return ResponseEntity.ok(entityCacheService.metrics());
+    }
+
+    // 游戏结算等批量加分，每条都需要幂等键
+    @PostMapping("/points/credits")
+    @RequiresPermission("admin.points")
+    public ResponseEntity<?> creditPoints(@RequestBody List<PointCredit> credits) {
+        for (PointCredit credit : credits) {
+            if (!PointsLedgerService.isValid(credit.getUserId(), credit.getDelta(), credit.getReason(), credit.getIdempotencyKey())) {
+                return ResponseEntity.badRequest().body("userId, a positive delta, reason (at most 32 characters) "
+                        + "and idempotencyKey (at most 100 characters) are required");
+            }
+        }
+        pointsLedgerService.creditAll(credits);
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/points/reconcile")
+    @RequiresPermission("admin.points")
+    public ResponseEntity<?> reconcilePoints() {
+        return ResponseEntity.ok(pointsLedgerService.reconcile());
+    }
+
+    // 直接在库里调整了角色的权限之后调用，清空所有用户的权限缓存
+    @PostMapping("/authorization/invalidate")
+    @RequiresPermission("admin.authorization")
+    public ResponseEntity<?> invalidateAuthorization() {
+        authorizationService.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,82 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.model.User;
+import com.klpbbs.service.AccountSummary;
+import com.klpbbs.service.AuthService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/auth")
+public class AuthController {
+
+    @Autowired
+    private AuthService authService;
+
+    @PostMapping("/register")
+    public ResponseEntity<?> register(@RequestParam String username, @RequestParam String email, @RequestParam String password) {
+        User user = authService.register(username, email, password);
+        return ResponseEntity.ok(AccountSummary.of(user));
+    }
+
+    // 异步返回，等待 BCrypt 时不占用请求线程
+    @PostMapping("/login")
+    public CompletableFuture<ResponseEntity<?>> login(@RequestParam String username, @RequestParam String password) {
+        return authService.login(username, password).thenApply(session -> {
+            if (session == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid username or password");
+            }
+            return ResponseEntity.ok(session);
+        });
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        authService.logout(BearerTokens.of(authorization));
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/session")
+    public ResponseEntity<?> getSession(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(userId);
+    }
+
+    // 客户端重试时带上相同的 Idempotency-Key，积分只扣一次；花费由服务端按当前等级计算
+    @PostMapping("/upgrade")
+    public ResponseEntity<?> upgrade(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        User user = authService.upgrade(userId, idempotencyKey);
+        if (user == null) {
+            return ResponseEntity.badRequest().body("Insufficient points");
+        }
+        return ResponseEntity.ok(AccountSummary.of(user));
+    }
+
+    @PostMapping("/forgot-password")
+    public ResponseEntity<?> forgotPassword(@RequestParam String email) {
+        authService.forgotPassword(email);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/reset-password")
+    public ResponseEntity<?> resetPassword(@RequestParam String token, @RequestParam String newPassword) {
+        User user = authService.resetPassword(token, newPassword);
+        if (user == null) {
+            return ResponseEntity.badRequest().body("Invalid or expired reset token");
+        }
+        return ResponseEntity.ok().build();
+    }
+}
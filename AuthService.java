@@ -2,12 +2,15 @@ package com.klpbbs.service;
 
 import com.klpbbs.model.User;
 import com.klpbbs.repository.UserRepository;
+import com.klpbbs.search.UserSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class AuthService {
@@ -16,13 +19,34 @@ public class AuthService {
     private UserRepository userRepository;
 
     @Autowired
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private PointsLedgerService pointsLedgerService;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    @Value("${klpbbs.points.upgrade-cost-per-level:100}")
+    private int upgradeCostPerLevel;
 
     public User register(String username, String email, String password) {
         User user = new User();
         user.setUsername(username);
         user.setEmail(email);
-        user.setPassword(passwordEncoder.encode(password));
+        user.setPassword(passwordHasher.encode(password));
         user.setPoints(0);
         user.setLevel(1);
         user.setOnline(false);
@@ -30,57 +54,84 @@ public class AuthService {
         user.setResetToken(null);
         user.setResetTokenExpiry(null);
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        userSearchIndex.indexAfterCommit(savedUser.getId(), savedUser.getUsername(), savedUser.getNickname(),
+                savedUser.getEmail(), savedUser.getPhone());
+        leaderboardService.refreshAfterCommit(savedUser.getId());
+        entityCacheService.evictUser(savedUser);
+        return savedUser;
     }
 
-    public User login(String username, String password) {
-        User user = userRepository.findByUsername(username);
-        if (user != null && passwordEncoder.matches(password, user.getPassword())) {
-            user.setOnline(true);
-            return userRepository.save(user);
+    // 只有真正输入密码时才做 BCrypt，并且放在独立线程池里；之后的请求用会话令牌做 HMAC 校验
+    // 缓存里的用户不带密码哈希，登录直接查库
+    public CompletableFuture<SessionToken> login(String username, String password) {
+        User user = userRepository.findByUsername(username).orElse(null);
+        if (user == null) {
+            return CompletableFuture.completedFuture(null);
         }
-        return null;
+        Long userId = user.getId();
+        return passwordHasher.matches(password, user.getPassword()).thenApply(matched -> {
+            if (!matched) {
+                return null;
+            }
+            presenceService.heartbeat(userId);
+            return sessionService.issue(userId);
+        });
+    }
+
+    public Long authenticate(String token) {
+        return sessionService.authenticate(token);
     }
 
+    public void logout(String token) {
+        Long userId = sessionService.authenticate(token);
+        sessionService.revoke(token);
+        if (userId != null) {
+            presenceService.leave(userId);
+        }
+    }
+
+    // 只更新令牌相关的列，不把读到的旧积分、等级整行写回去，避免覆盖并发的积分流水更新
+    @Transactional
     public User forgotPassword(String email) {
         User user = userRepository.findByEmail(email);
         if (user != null) {
             String token = UUID.randomUUID().toString();
+            LocalDate expiry = LocalDate.now().plusDays(1);
+            userRepository.updateResetToken(user.getId(), token, expiry);
             user.setResetToken(token);
-            user.setResetTokenExpiry(LocalDate.now().plusDays(1));
-            return userRepository.save(user);
+            user.setResetTokenExpiry(expiry);
+            entityCacheService.evictUser(user);
+            return user;
         }
         return null;
     }
 
+    @Transactional
     public User resetPassword(String token, String newPassword) {
         User user = userRepository.findByResetToken(token);
-        if (user != null && user.getResetTokenExpiry().isAfter(LocalDate.now())) {
-            user.setPassword(passwordEncoder.encode(newPassword));
-            user.setResetToken(null);
-            user.setResetTokenExpiry(null);
-            return userRepository.save(user);
+        if (user != null && user.getResetTokenExpiry().isAfter(LocalDate.now())
+                && userRepository.resetPassword(user.getId(), token, passwordHasher.encode(newPassword)) > 0) {
+            entityCacheService.evictUser(user);
+            sessionService.revokeAll(user.getId());
+            return user;
         }
         return null;
     }
 
-    public User checkIn(Long userId) {
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null && (user.getLastCheckin() == null || !user.getLastCheckin().equals(LocalDate.now()))) {
-            user.setPoints(user.getPoints() + 10);
-            user.setLastCheckin(LocalDate.now());
-            return userRepository.save(user);
+    // 升级花费由服务端按当前等级计算；余额判断和扣减在一条条件 UPDATE 里完成，并记一条带幂等键的积分流水
+    public User upgrade(Long userId, String idempotencyKey) {
+        User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("User not found"));
+        int level = user.getLevel() == null ? 1 : user.getLevel();
+        int cost = level * upgradeCostPerLevel;
+        if (cost <= 0) {
+            throw new RuntimeException("Invalid upgrade cost");
         }
-        return user;
-    }
-
-    public User upgrade(Long userId, int points) {
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null && user.getPoints() >= points) {
-            user.setPoints(user.getPoints() - points);
-            user.setLevel(user.getLevel() + 1);
-            return userRepository.save(user);
+        String key = idempotencyKey == null ? "upgrade:" + UUID.randomUUID() : "upgrade:" + userId + ":" + idempotencyKey;
+        if (!pointsLedgerService.upgrade(userId, level, cost, key)) {
+            return null;
         }
-        return user;
+        leaderboardService.refreshAfterCommit(userId);
+        return userRepository.findById(userId).orElse(null);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,70 @@
+package com.klpbbs.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.klpbbs.support.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+// 授权判断：每个用户的有效权限编译成位图后缓存，每次检查只做一次位与
+// 角色或权限变更时按用户失效；直接改库调整角色权限后调用 invalidateAll
+@Service
+public class AuthorizationService {
+
+    private static final String EFFECTIVE_PERMISSIONS_SQL = "SELECT p.name FROM user_role ur "
+            + "JOIN role_permission rp ON rp.role_id = ur.role_id JOIN permission p ON p.id = rp.permission_id WHERE ur.user_id = ? "
+            + "UNION SELECT p.name FROM user_permission up JOIN permission p ON p.id = up.permission_id WHERE up.user_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PermissionRegistry permissionRegistry;
+
+    @Value("${klpbbs.authorization.max-cached-users:100000}")
+    private long maxCachedUsers;
+
+    @Value("${klpbbs.authorization.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private Cache<Long, PermissionSet> permissions;
+
+    @PostConstruct
+    public void init() {
+        permissions = Caffeine.newBuilder()
+                .maximumSize(maxCachedUsers)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    public boolean isAllowed(Long userId, String permission) {
+        return isAllowed(userId, permissionRegistry.bitOf(permission));
+    }
+
+    // 调用方可以预先取好 bitOf，热路径上只剩一次缓存读取和一次位与
+    public boolean isAllowed(Long userId, int bit) {
+        if (userId == null) {
+            return false;
+        }
+        return permissions.get(userId, this::compile).has(bit);
+    }
+
+    public void invalidateAfterCommit(Long userId) {
+        AfterCommit.run(() -> permissions.invalidate(userId));
+    }
+
+    public void invalidateAll() {
+        permissions.invalidateAll();
+    }
+
+    private PermissionSet compile(Long userId) {
+        List<String> names = jdbcTemplate.queryForList(EFFECTIVE_PERMISSIONS_SQL, String.class, userId, userId);
+        return PermissionSet.of(names, permissionRegistry);
+    }
+}
@@ -0,0 +1,13 @@
+package com.klpbbs.controller;
+
+final class BearerTokens {
+
+    private static final String BEARER = "Bearer ";
+
+    private BearerTokens() {
+    }
+
+    static String of(String authorization) {
+        return authorization != null && authorization.startsWith(BEARER) ? authorization.substring(BEARER.length()) : authorization;
+    }
+}
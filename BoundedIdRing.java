@@ -0,0 +1,129 @@
+package com.klpbbs.support;
+
+// 有界的 id 环形缓冲区，按 id 从大到小保存最近的 capacity 个 id
+// 绝大多数写入比现有的都大，直接写在环的头部；偶尔的乱序写入走插入排序
+public final class BoundedIdRing {
+
+    private final long[] ids;
+    // 下一个写入位置，最新的 id 在 next - 1
+    private int next;
+    private int size;
+    // 为 false 表示有更旧的 id 被挤出或者加载时就没有装下，比 oldest 更早的部分要回源
+    private boolean complete;
+
+    public BoundedIdRing(int capacity) {
+        this.ids = new long[capacity];
+        this.complete = true;
+    }
+
+    // ids 必须从大到小排列，多出 capacity 的部分丢弃
+    public static BoundedIdRing of(long[] newestFirst, int length, int capacity, boolean complete) {
+        BoundedIdRing ring = new BoundedIdRing(capacity);
+        int kept = Math.min(length, capacity);
+        for (int i = kept - 1; i >= 0; i--) {
+            ring.ids[ring.next] = newestFirst[i];
+            ring.next = (ring.next + 1) % capacity;
+        }
+        ring.size = kept;
+        ring.complete = complete && length <= capacity;
+        return ring;
+    }
+
+    // 已经存在时返回 false
+    public synchronized boolean push(long id) {
+        int capacity = ids.length;
+        if (size == 0 || id > ids[(next - 1 + capacity) % capacity]) {
+            if (size == capacity) {
+                complete = false;
+            } else {
+                size++;
+            }
+            ids[next] = id;
+            next = (next + 1) % capacity;
+            return true;
+        }
+
+        long[] current = snapshotLocked();
+        int insertAt = insertionPoint(current, id);
+        if (insertAt < size && current[insertAt] == id) {
+            return false;
+        }
+        if (insertAt == capacity) {
+            // 比缓冲区里最旧的还旧，本来就落在回源的范围里
+            complete = false;
+            return false;
+        }
+        long[] merged = new long[Math.min(size + 1, capacity)];
+        System.arraycopy(current, 0, merged, 0, insertAt);
+        merged[insertAt] = id;
+        System.arraycopy(current, insertAt, merged, insertAt + 1, merged.length - insertAt - 1);
+        if (size == capacity) {
+            complete = false;
+        }
+        size = merged.length;
+        for (int i = 0; i < size; i++) {
+            ids[(size - 1 - i) % capacity] = merged[i];
+        }
+        next = size % capacity;
+        return true;
+    }
+
+    // 不存在时返回 false；删掉最旧的一条后 floor 随之上移，多出的部分回源
+    public synchronized boolean remove(long id) {
+        long[] current = snapshotLocked();
+        int at = insertionPoint(current, id);
+        if (at == size || current[at] != id) {
+            return false;
+        }
+        int capacity = ids.length;
+        size--;
+        for (int i = 0, j = 0; i < current.length; i++) {
+            if (i != at) {
+                ids[(size - 1 - j) % capacity] = current[i];
+                j++;
+            }
+        }
+        next = size % capacity;
+        return true;
+    }
+
+    // 从大到小的副本
+    public synchronized long[] snapshot() {
+        return snapshotLocked();
+    }
+
+    // 缓冲区能代表的最小 id，完整时返回 0，表示不需要回源
+    public synchronized long floor() {
+        if (complete) {
+            return 0;
+        }
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        return ids[(next - size + ids.length) % ids.length];
+    }
+
+    // 从大到小排列的数组里第一个不大于 id 的位置
+    private static int insertionPoint(long[] newestFirst, long id) {
+        int low = 0;
+        int high = newestFirst.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (newestFirst[mid] > id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long[] snapshotLocked() {
+        long[] result = new long[size];
+        int capacity = ids.length;
+        for (int i = 0; i < size; i++) {
+            result[i] = ids[(next - 1 - i + capacity) % capacity];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,57 @@
+package com.klpbbs.support;
+
+public class CacheMetrics {
+
+    private final String name;
+    private final long size;
+    private final long hits;
+    private final long misses;
+    private final double hitRate;
+    private final long loads;
+    private final long evictions;
+    private final double averageLoadMs;
+
+    public CacheMetrics(String name, long size, long hits, long misses, double hitRate,
+                        long loads, long evictions, double averageLoadMs) {
+        this.name = name;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.hitRate = hitRate;
+        this.loads = loads;
+        this.evictions = evictions;
+        this.averageLoadMs = averageLoadMs;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    public long getLoads() {
+        return loads;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getAverageLoadMs() {
+        return averageLoadMs;
+    }
+}
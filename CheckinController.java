@@ -0,0 +1,41 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.service.AuthService;
+import com.klpbbs.service.CheckinResult;
+import com.klpbbs.service.CheckinService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+
+@RestController
+@RequestMapping("/api/checkins")
+public class CheckinController {
+
+    @Autowired
+    private CheckinService checkinService;
+
+    @Autowired
+    private AuthService authService;
+
+    @PostMapping
+    public ResponseEntity<?> checkIn(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        CheckinResult result = checkinService.checkIn(userId);
+        return ResponseEntity.ok(result);
+    }
+
+    // month 格式为 2026-10，省略时为当月
+    @GetMapping("/{userId}")
+    public ResponseEntity<?> getCalendar(@PathVariable Long userId, @RequestParam(required = false) String month) {
+        YearMonth yearMonth = month == null ? YearMonth.now() : YearMonth.parse(month);
+        CheckinResult result = checkinService.calendar(userId, yearMonth);
+        return ResponseEntity.ok(result);
+    }
+}
@@ -0,0 +1,55 @@
+package com.klpbbs.entity;
+
+import jakarta.persistence.*;
+
+// 每个用户每月一行，days 的第 n-1 位表示当月第 n 天已签到
+@Entity
+@Table(name = "checkin_month", uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "month"}))
+public class CheckinMonth {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // yyyyMM，例如 202610
+    @Column(nullable = false)
+    private Integer month;
+
+    @Column(nullable = false)
+    private Integer days;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Integer getMonth() {
+        return month;
+    }
+
+    public void setMonth(Integer month) {
+        this.month = month;
+    }
+
+    public Integer getDays() {
+        return days;
+    }
+
+    public void setDays(Integer days) {
+        this.days = days;
+    }
+}
@@ -0,0 +1,29 @@
+package com.klpbbs.repository;
+
+import com.klpbbs.entity.CheckinMonth;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CheckinMonthRepository extends JpaRepository<CheckinMonth, Long> {
+
+    Optional<CheckinMonth> findByUserIdAndMonth(Long userId, Integer month);
+
+    List<CheckinMonth> findByUserIdAndMonthBetween(Long userId, Integer fromMonth, Integer toMonth);
+
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO checkin_month (user_id, month, days) VALUES (:userId, :month, 0)", nativeQuery = true)
+    int insertMonthIfAbsent(@Param("userId") Long userId, @Param("month") Integer month);
+
+    // 只有这一位原来是 0 时才会命中，返回 1 表示本次签到成功，0 表示今天已经签过
+    @Modifying
+    @Query(value = "UPDATE checkin_month SET days = days | :bit WHERE user_id = :userId AND month = :month AND days & :bit = 0",
+            nativeQuery = true)
+    int setDayBit(@Param("userId") Long userId, @Param("month") Integer month, @Param("bit") int bit);
+}
@@ -0,0 +1,35 @@
+package com.klpbbs.service;
+
+import java.util.List;
+
+public class CheckinResult {
+
+    private final boolean checkedIn;
+    private final int pointsAwarded;
+    private final int streak;
+    private final List<Integer> days;
+
+    public CheckinResult(boolean checkedIn, int pointsAwarded, int streak, List<Integer> days) {
+        this.checkedIn = checkedIn;
+        this.pointsAwarded = pointsAwarded;
+        this.streak = streak;
+        this.days = days;
+    }
+
+    // false 表示今天已经签到过
+    public boolean isCheckedIn() {
+        return checkedIn;
+    }
+
+    public int getPointsAwarded() {
+        return pointsAwarded;
+    }
+
+    public int getStreak() {
+        return streak;
+    }
+
+    public List<Integer> getDays() {
+        return days;
+    }
+}
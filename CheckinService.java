@@ -0,0 +1,117 @@
+package com.klpbbs.service;
+
+import com.klpbbs.entity.CheckinMonth;
+import com.klpbbs.repository.CheckinMonthRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 每日签到：按月的位图记录签到日，用条件更新置位保证每人每天只奖励一次，积分流水和置位在同一个事务里写入
+@Service
+public class CheckinService {
+
+    private static final DateTimeFormatter DAY_KEY = DateTimeFormatter.BASIC_ISO_DATE;
+    // 计算连续签到时每次往前加载的月数
+    private static final int STREAK_MONTHS_PER_LOAD = 3;
+
+    @Autowired
+    private CheckinMonthRepository checkinMonthRepository;
+
+    @Autowired
+    private PointsLedgerService pointsLedgerService;
+
+    @Value("${klpbbs.checkin.points:10}")
+    private int pointsPerCheckin;
+
+    @Transactional
+    public CheckinResult checkIn(Long userId) {
+        LocalDate today = LocalDate.now();
+        int month = monthKey(YearMonth.from(today));
+        checkinMonthRepository.insertMonthIfAbsent(userId, month);
+        boolean checkedIn = checkinMonthRepository.setDayBit(userId, month, dayBit(today)) == 1;
+        if (checkedIn) {
+            // 幂等键按用户和日期生成；流水与置位一起提交，不会出现签到成功却没加分
+            pointsLedgerService.creditInTransaction(userId, pointsPerCheckin, "CHECKIN",
+                    "checkin:" + userId + ":" + today.format(DAY_KEY));
+        }
+
+        Map<Integer, Integer> months = new HashMap<>();
+        int streak = streak(userId, today, months);
+        return new CheckinResult(checkedIn, checkedIn ? pointsPerCheckin : 0, streak,
+                daysOf(months.getOrDefault(month, 0)));
+    }
+
+    @Transactional(readOnly = true)
+    public CheckinResult calendar(Long userId, YearMonth yearMonth) {
+        LocalDate today = LocalDate.now();
+        Map<Integer, Integer> months = new HashMap<>();
+        int streak = streak(userId, today, months);
+        Integer days = months.get(monthKey(yearMonth));
+        if (days == null) {
+            days = checkinMonthRepository.findByUserIdAndMonth(userId, monthKey(yearMonth))
+                    .map(CheckinMonth::getDays)
+                    .orElse(0);
+        }
+        return new CheckinResult(false, 0, streak, daysOf(days));
+    }
+
+    // 从今天往前数连续签到的天数，今天还没签到时从昨天开始数；月份按需往前加载，断签后不再多查
+    private int streak(Long userId, LocalDate today, Map<Integer, Integer> months) {
+        YearMonth loadedFrom = YearMonth.from(today).plusMonths(1);
+        LocalDate day = today;
+        int streak = 0;
+        while (true) {
+            YearMonth month = YearMonth.from(day);
+            if (month.isBefore(loadedFrom)) {
+                loadedFrom = month.minusMonths(STREAK_MONTHS_PER_LOAD - 1);
+                loadMonths(userId, loadedFrom, month, months);
+            }
+            if (isChecked(months, day)) {
+                streak++;
+            } else if (!day.equals(today)) {
+                return streak;
+            }
+            day = day.minusDays(1);
+        }
+    }
+
+    private void loadMonths(Long userId, YearMonth from, YearMonth to, Map<Integer, Integer> months) {
+        for (CheckinMonth row : checkinMonthRepository.findByUserIdAndMonthBetween(userId, monthKey(from), monthKey(to))) {
+            months.put(row.getMonth(), row.getDays());
+        }
+        // 没有记录的月份也记下来，之后按未签到处理
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            months.putIfAbsent(monthKey(month), 0);
+        }
+    }
+
+    private static boolean isChecked(Map<Integer, Integer> months, LocalDate day) {
+        Integer days = months.get(monthKey(YearMonth.from(day)));
+        return days != null && (days & dayBit(day)) != 0;
+    }
+
+    private static List<Integer> daysOf(int bits) {
+        List<Integer> days = new ArrayList<>(Integer.bitCount(bits));
+        for (int remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            days.add(Integer.numberOfTrailingZeros(remaining) + 1);
+        }
+        return days;
+    }
+
+    private static int monthKey(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+    private static int dayBit(LocalDate day) {
+        return 1 << (day.getDayOfMonth() - 1);
+    }
+}
@@ -0,0 +1,127 @@
+package com.klpbbs.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// 帖子评论，path 是从顶层评论到自己的 id 链，每段为定长的 36 进制 id，
+// 按 path 排序就是整棵评论树的先序遍历，任意子树都是一段连续的 path 范围
+@Entity
+@Table(name = "comment", indexes = {
+        @Index(columnList = "post_id, path"),
+        @Index(columnList = "post_id, depth, id")
+})
+public class Comment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    @Column(name = "parent_id")
+    private Long parentId;
+
+    @Column(name = "author_id", nullable = false)
+    private Long authorId;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    @Column(length = 256)
+    private String path;
+
+    // 顶层评论为 0
+    @Column(nullable = false)
+    private Integer depth;
+
+    // 所有后代的数量，新增回复时沿 path 给每个祖先加一
+    @Column(nullable = false)
+    private Integer descendants;
+
+    @Column(nullable = false)
+    private Boolean deleted;
+
+    private LocalDateTime createTime;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getPostId() {
+        return postId;
+    }
+
+    public void setPostId(Long postId) {
+        this.postId = postId;
+    }
+
+    public Long getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(Long parentId) {
+        this.parentId = parentId;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(Long authorId) {
+        this.authorId = authorId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    public Integer getDescendants() {
+        return descendants;
+    }
+
+    public void setDescendants(Integer descendants) {
+        this.descendants = descendants;
+    }
+
+    public Boolean getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(Boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+}
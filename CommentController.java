@@ -0,0 +1,60 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.entity.Comment;
+import com.klpbbs.service.AuthService;
+import com.klpbbs.service.CommentNode;
+import com.klpbbs.service.CommentService;
+import com.klpbbs.support.CursorPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+public class CommentController {
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private AuthService authService;
+
+    // parentId 为空时发表顶层评论
+    @PostMapping("/api/posts/{postId}/comments")
+    public ResponseEntity<?> addComment(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization,
+                                        @PathVariable Long postId,
+                                        @RequestParam(required = false) Long parentId,
+                                        @RequestBody String content) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Comment comment = commentService.addComment(postId, parentId, userId, content);
+        return ResponseEntity.ok(comment);
+    }
+
+    @GetMapping("/api/posts/{postId}/comments")
+    public ResponseEntity<?> getComments(@PathVariable Long postId,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit) {
+        CursorPage<CommentNode> page = commentService.getThreads(postId, cursor, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/api/comments/{id}/replies")
+    public ResponseEntity<?> getReplies(@PathVariable Long id) {
+        CommentNode node = commentService.getReplies(id);
+        return ResponseEntity.ok(node);
+    }
+
+    @DeleteMapping("/api/comments/{id}")
+    public ResponseEntity<?> deleteComment(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization, @PathVariable Long id) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        commentService.deleteComment(id, userId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,66 @@
+package com.klpbbs.service;
+
+import com.klpbbs.entity.Comment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CommentNode {
+
+    private final Long id;
+    private final Long parentId;
+    private final Long authorId;
+    private final String content;
+    private final int depth;
+    private final LocalDateTime createTime;
+    private final List<CommentNode> replies = new ArrayList<>();
+    private int hiddenReplies;
+
+    public CommentNode(Comment comment) {
+        this.id = comment.getId();
+        this.parentId = comment.getParentId();
+        this.authorId = Boolean.TRUE.equals(comment.getDeleted()) ? null : comment.getAuthorId();
+        this.content = Boolean.TRUE.equals(comment.getDeleted()) ? null : comment.getContent();
+        this.depth = comment.getDepth();
+        this.createTime = comment.getCreateTime();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getParentId() {
+        return parentId;
+    }
+
+    // 已删除的评论保留在树里占位，作者和内容为空
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public List<CommentNode> getReplies() {
+        return replies;
+    }
+
+    // 没有随本次结果返回的后代数量，需要时通过 /api/comments/{id}/replies 展开
+    public int getHiddenReplies() {
+        return hiddenReplies;
+    }
+
+    void setHiddenReplies(int hiddenReplies) {
+        this.hiddenReplies = hiddenReplies;
+    }
+}
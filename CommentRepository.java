@@ -0,0 +1,27 @@
+package com.klpbbs.repository;
+
+import com.klpbbs.entity.Comment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CommentRepository extends JpaRepository<Comment, Long> {
+
+    @Query("SELECT c.id FROM Comment c WHERE c.postId = :postId AND c.depth = 0 AND c.id > :afterId ORDER BY c.id")
+    List<Long> findTopLevelIds(@Param("postId") Long postId, @Param("afterId") Long afterId, Pageable pageable);
+
+    // 一次范围扫描取出 [fromPath, toPath) 内的所有评论，按树的先序排列
+    List<Comment> findByPostIdAndPathGreaterThanEqualAndPathLessThanOrderByPathAsc(Long postId, String fromPath, String toPath,
+                                                                                   Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Comment c SET c.descendants = c.descendants + 1 WHERE c.id IN :ids")
+    int incrementDescendants(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,265 @@
+package com.klpbbs.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.klpbbs.entity.Comment;
+import com.klpbbs.repository.CommentRepository;
+import com.klpbbs.repository.PostRepository;
+import com.klpbbs.support.AfterCommit;
+import com.klpbbs.support.CursorPage;
+import com.klpbbs.support.IdCursor;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+// 评论树：用物化路径存储，一页顶层评论连同它们的回复是一次 path 范围扫描
+// 超过 collapse-depth 的回复和超出单页行数上限的部分不返回，只在最近的可见祖先上给出隐藏数量
+@Service
+@Transactional
+public class CommentService {
+
+    private static final int SEGMENT_WIDTH = 8;
+    private static final int MAX_DEPTH = 256 / SEGMENT_WIDTH - 1;
+    private static final int MAX_CONTENT_LENGTH = 10000;
+    private static final int MAX_PAGE_SIZE = 50;
+
+    private static final String COMMENTS_COUNT_SQL = "UPDATE users SET comments_count = COALESCE(comments_count, 0) + 1, "
+            + "update_time = ? WHERE id = ?";
+    private static final String COMMENTS_UNCOUNT_SQL = "UPDATE users SET comments_count = GREATEST(COALESCE(comments_count, 0) - 1, 0), "
+            + "update_time = ? WHERE id = ?";
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${klpbbs.comments.page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${klpbbs.comments.collapse-depth:5}")
+    private int collapseDepth;
+
+    @Value("${klpbbs.comments.max-rows-per-page:2000}")
+    private int maxRowsPerPage;
+
+    @Value("${klpbbs.comments.hot-threads:10000}")
+    private long hotThreads;
+
+    // 帖子 id -> 默认页大小的第一页，有新评论或删除时失效
+    private Cache<Long, CursorPage<CommentNode>> firstPages;
+
+    @PostConstruct
+    public void init() {
+        firstPages = Caffeine.newBuilder()
+                .maximumSize(hotThreads)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .build();
+    }
+
+    // parentId 为空表示顶层评论；超过最大层数的回复挂到父评论的上一级
+    public Comment addComment(Long postId, Long parentId, Long authorId, String content) {
+        if (content == null || content.isBlank()) {
+            throw new RuntimeException("Comment content is required");
+        }
+        if (content.length() > MAX_CONTENT_LENGTH) {
+            throw new RuntimeException("Comment is too long");
+        }
+        // 未发布或已下架的帖子不接受评论
+        if (!postRepository.existsByIdAndStatus(postId, "PUBLISHED")) {
+            throw new RuntimeException("Post not found");
+        }
+
+        Comment parent = null;
+        if (parentId != null) {
+            parent = commentRepository.findById(parentId).orElseThrow(() -> new RuntimeException("Comment not found"));
+            if (!parent.getPostId().equals(postId)) {
+                throw new RuntimeException("Comment not found");
+            }
+            if (parent.getDepth() >= MAX_DEPTH) {
+                parent = commentRepository.findById(parent.getParentId()).orElseThrow(() -> new RuntimeException("Comment not found"));
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Comment comment = new Comment();
+        comment.setPostId(postId);
+        comment.setParentId(parent == null ? null : parent.getId());
+        comment.setAuthorId(authorId);
+        comment.setContent(content);
+        comment.setDepth(parent == null ? 0 : parent.getDepth() + 1);
+        comment.setDescendants(0);
+        comment.setDeleted(false);
+        comment.setCreateTime(now);
+        // 自增 id 插入后才知道，path 随后在同一事务里补上
+        commentRepository.save(comment);
+        comment.setPath((parent == null ? "" : parent.getPath()) + segment(comment.getId()));
+
+        if (parent != null) {
+            commentRepository.incrementDescendants(ancestorIds(parent.getPath()));
+        }
+        jdbcTemplate.update(COMMENTS_COUNT_SQL, Timestamp.valueOf(now), authorId);
+        entityCacheService.evictUserId(authorId);
+        leaderboardService.refreshAfterCommit(authorId);
+
+        AfterCommit.run(() -> {
+            engagementCounterService.record(postId, EngagementType.COMMENT, 1);
+            firstPages.invalidate(postId);
+        });
+        // 帖子作者和被回复的人合成一条意图，同一个人只收到一条通知
+        notificationService.notifyAfterCommit(NotificationType.REPLY, authorId, postId,
+                parent == null ? Collections.emptyList() : Collections.singletonList(parent.getAuthorId()));
+        return comment;
+    }
+
+    // 软删除，节点保留在树里，回复不受影响
+    public void deleteComment(Long commentId, Long userId) {
+        Comment comment = commentRepository.findById(commentId).orElseThrow(() -> new RuntimeException("Comment not found"));
+        if (!comment.getAuthorId().equals(userId)) {
+            throw new RuntimeException("Not the author of this comment");
+        }
+        if (Boolean.TRUE.equals(comment.getDeleted())) {
+            return;
+        }
+        comment.setDeleted(true);
+        jdbcTemplate.update(COMMENTS_UNCOUNT_SQL, Timestamp.valueOf(LocalDateTime.now()), userId);
+        entityCacheService.evictUserId(userId);
+        leaderboardService.refreshAfterCommit(userId);
+        Long postId = comment.getPostId();
+        AfterCommit.run(() -> {
+            engagementCounterService.record(postId, EngagementType.COMMENT, -1);
+            firstPages.invalidate(postId);
+        });
+    }
+
+    // 按顶层评论分页，cursor 为上一页最后一个顶层评论
+    @Transactional(readOnly = true)
+    public CursorPage<CommentNode> getThreads(Long postId, String cursor, Integer limit) {
+        int size = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Long afterId = IdCursor.decode(cursor);
+        if (afterId == null && size == defaultPageSize) {
+            return firstPages.get(postId, id -> loadThreads(id, 0L, size));
+        }
+        return loadThreads(postId, afterId == null ? 0L : afterId, size);
+    }
+
+    // 展开某条评论下的回复，深度从这条评论重新计算
+    @Transactional(readOnly = true)
+    public CommentNode getReplies(Long commentId) {
+        Comment root = commentRepository.findById(commentId).orElseThrow(() -> new RuntimeException("Comment not found"));
+        List<Comment> rows = commentRepository.findByPostIdAndPathGreaterThanEqualAndPathLessThanOrderByPathAsc(root.getPostId(),
+                root.getPath(), upperBound(root.getPath()), PageRequest.of(0, maxRowsPerPage));
+        return buildTrees(rows, root.getDepth()).get(0);
+    }
+
+    private CursorPage<CommentNode> loadThreads(Long postId, long afterId, int size) {
+        List<Long> topLevelIds = commentRepository.findTopLevelIds(postId, afterId, PageRequest.of(0, size + 1));
+        String nextCursor = null;
+        if (topLevelIds.size() > size) {
+            topLevelIds = topLevelIds.subList(0, size);
+            nextCursor = IdCursor.encode(topLevelIds.get(size - 1));
+        }
+        if (topLevelIds.isEmpty()) {
+            return new CursorPage<>(new ArrayList<>(), null);
+        }
+        // 这一页的顶层评论 id 连续，它们的整棵子树正好落在首尾两个 path 之间
+        String from = segment(topLevelIds.get(0));
+        String to = upperBound(segment(topLevelIds.get(topLevelIds.size() - 1)));
+        List<Comment> rows = commentRepository.findByPostIdAndPathGreaterThanEqualAndPathLessThanOrderByPathAsc(postId, from, to,
+                PageRequest.of(0, maxRowsPerPage));
+        List<CommentNode> threads = buildTrees(rows, 0);
+        // 行数上限截断时，没装进来的顶层评论仍要出现在结果里
+        if (threads.size() < topLevelIds.size()) {
+            for (Comment comment : commentRepository.findAllById(topLevelIds.subList(threads.size(), topLevelIds.size()))) {
+                CommentNode node = new CommentNode(comment);
+                node.setHiddenReplies(comment.getDescendants());
+                threads.add(node);
+            }
+            threads.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        }
+        return new CursorPage<>(threads, nextCursor);
+    }
+
+    // rows 按 path 排列；深度超过 baseDepth + collapseDepth 的不挂到树上，
+    // 每个节点的隐藏数 = 全部后代数 - 返回的直接回复及其后代数
+    private List<CommentNode> buildTrees(List<Comment> rows, int baseDepth) {
+        List<CommentNode> roots = new ArrayList<>();
+        Deque<CommentNode> stack = new ArrayDeque<>();
+        Deque<String> paths = new ArrayDeque<>();
+        Deque<int[]> remaining = new ArrayDeque<>();
+        for (Comment comment : rows) {
+            while (!paths.isEmpty() && !comment.getPath().startsWith(paths.peek())) {
+                stack.pop().setHiddenReplies(remaining.pop()[0]);
+                paths.pop();
+            }
+            if (comment.getDepth() - baseDepth > collapseDepth) {
+                continue;
+            }
+            CommentNode node = new CommentNode(comment);
+            if (stack.isEmpty()) {
+                roots.add(node);
+            } else {
+                stack.peek().getReplies().add(node);
+                remaining.peek()[0] -= 1 + comment.getDescendants();
+            }
+            stack.push(node);
+            paths.push(comment.getPath());
+            remaining.push(new int[]{comment.getDescendants()});
+        }
+        while (!stack.isEmpty()) {
+            stack.pop().setHiddenReplies(remaining.pop()[0]);
+        }
+        return roots;
+    }
+
+    private static String segment(long id) {
+        String value = Long.toString(id, 36);
+        StringBuilder segment = new StringBuilder(SEGMENT_WIDTH);
+        for (int i = value.length(); i < SEGMENT_WIDTH; i++) {
+            segment.append('0');
+        }
+        return segment.append(value).toString();
+    }
+
+    // 把最后一段的 id 加一，以 prefix 开头的所有 path 都小于这个值；不用特殊字符，避免受排序规则影响
+    private static String upperBound(String prefix) {
+        int last = prefix.length() - SEGMENT_WIDTH;
+        return prefix.substring(0, last) + segment(Long.parseLong(prefix.substring(last), 36) + 1);
+    }
+
+    private static List<Long> ancestorIds(String path) {
+        List<Long> ids = new ArrayList<>(path.length() / SEGMENT_WIDTH);
+        for (int i = 0; i < path.length(); i += SEGMENT_WIDTH) {
+            ids.add(Long.parseLong(path.substring(i, i + SEGMENT_WIDTH), 36));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,257 @@
+package com.klpbbs.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+// 有序 long 集合，按块存储：每块记录首个值，其余值与前一个值的差按 varint 编码，
+// 自增 id 之类的稠密数据每个元素只占 1~2 字节；按升序追加是 O(1)，其他位置的增删只重编码一个块。调用方负责加锁
+public final class CompressedLongSet {
+
+    private static final int CHUNK_SIZE = 128;
+
+    private long[] firsts = new long[1];
+    private long[] lasts = new long[1];
+    private int[] counts = new int[1];
+    private byte[][] deltas = new byte[1][];
+    // 每块 deltas 中已使用的字节数
+    private int[] lengths = new int[1];
+    private int chunkCount;
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(long value) {
+        int chunk = floorChunk(value);
+        if (chunk < 0 || value > lasts[chunk]) {
+            return false;
+        }
+        if (value == firsts[chunk] || value == lasts[chunk]) {
+            return true;
+        }
+        byte[] bytes = deltas[chunk];
+        long current = firsts[chunk];
+        int pos = 0;
+        while (pos < lengths[chunk]) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[pos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            current += delta;
+            if (current >= value) {
+                return current == value;
+            }
+        }
+        return false;
+    }
+
+    public boolean add(long value) {
+        if (chunkCount == 0) {
+            insertChunk(0, new long[]{value}, 1);
+            size++;
+            return true;
+        }
+        int chunk = Math.max(0, floorChunk(value));
+        // 升序追加的快速路径
+        if (chunk == chunkCount - 1 && value > lasts[chunk] && counts[chunk] < CHUNK_SIZE) {
+            appendDelta(chunk, value - lasts[chunk]);
+            lasts[chunk] = value;
+            counts[chunk]++;
+            size++;
+            return true;
+        }
+        if (chunk == chunkCount - 1 && value > lasts[chunk]) {
+            insertChunk(chunkCount, new long[]{value}, 1);
+            size++;
+            return true;
+        }
+
+        long[] values = decode(chunk);
+        int index = Arrays.binarySearch(values, 0, counts[chunk], value);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        int count = counts[chunk];
+        long[] updated = new long[count + 1];
+        System.arraycopy(values, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(values, insertAt, updated, insertAt + 1, count - insertAt);
+        if (updated.length > CHUNK_SIZE) {
+            int half = updated.length / 2;
+            encode(chunk, updated, 0, half);
+            insertChunk(chunk + 1, Arrays.copyOfRange(updated, half, updated.length), updated.length - half);
+        } else {
+            encode(chunk, updated, 0, updated.length);
+        }
+        size++;
+        return true;
+    }
+
+    public boolean remove(long value) {
+        int chunk = floorChunk(value);
+        if (chunk < 0 || value > lasts[chunk]) {
+            return false;
+        }
+        long[] values = decode(chunk);
+        int count = counts[chunk];
+        int index = Arrays.binarySearch(values, 0, count, value);
+        if (index < 0) {
+            return false;
+        }
+        if (count == 1) {
+            removeChunk(chunk);
+        } else {
+            System.arraycopy(values, index + 1, values, index, count - index - 1);
+            encode(chunk, values, 0, count - 1);
+        }
+        size--;
+        return true;
+    }
+
+    // 按升序访问大于 after 的元素，visitor 返回 false 时停止
+    public void forEachAfter(long after, LongPredicate visitor) {
+        int chunk = Math.max(0, floorChunk(after));
+        for (; chunk < chunkCount; chunk++) {
+            if (lasts[chunk] <= after) {
+                continue;
+            }
+            long current = firsts[chunk];
+            if (current > after && !visitor.test(current)) {
+                return;
+            }
+            byte[] bytes = deltas[chunk];
+            int pos = 0;
+            while (pos < lengths[chunk]) {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[pos++];
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                current += delta;
+                if (current > after && !visitor.test(current)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public List<Long> page(long after, int limit) {
+        List<Long> values = new ArrayList<>(Math.min(limit, size));
+        if (limit <= 0) {
+            return values;
+        }
+        forEachAfter(after, value -> {
+            values.add(value);
+            return values.size() < limit;
+        });
+        return values;
+    }
+
+    // 最后一个首值不大于 value 的块，没有返回 -1
+    private int floorChunk(long value) {
+        int low = 0;
+        int high = chunkCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firsts[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private long[] decode(int chunk) {
+        long[] values = new long[counts[chunk]];
+        int index = 0;
+        long current = firsts[chunk];
+        values[index++] = current;
+        byte[] bytes = deltas[chunk];
+        int pos = 0;
+        while (pos < lengths[chunk]) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[pos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            current += delta;
+            values[index++] = current;
+        }
+        return values;
+    }
+
+    private void encode(int chunk, long[] values, int from, int to) {
+        firsts[chunk] = values[from];
+        lasts[chunk] = values[to - 1];
+        counts[chunk] = to - from;
+        deltas[chunk] = new byte[Math.max(4, (to - from - 1) * 2)];
+        lengths[chunk] = 0;
+        for (int i = from + 1; i < to; i++) {
+            appendDelta(chunk, values[i] - values[i - 1]);
+        }
+    }
+
+    private void appendDelta(int chunk, long delta) {
+        byte[] bytes = deltas[chunk];
+        if (lengths[chunk] + 10 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, lengths[chunk] + 10));
+            deltas[chunk] = bytes;
+        }
+        int pos = lengths[chunk];
+        while ((delta & ~0x7FL) != 0) {
+            bytes[pos++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        bytes[pos++] = (byte) delta;
+        lengths[chunk] = pos;
+    }
+
+    private void insertChunk(int at, long[] values, int count) {
+        if (chunkCount == firsts.length) {
+            int capacity = firsts.length * 2;
+            firsts = Arrays.copyOf(firsts, capacity);
+            lasts = Arrays.copyOf(lasts, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            deltas = Arrays.copyOf(deltas, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        int moved = chunkCount - at;
+        System.arraycopy(firsts, at, firsts, at + 1, moved);
+        System.arraycopy(lasts, at, lasts, at + 1, moved);
+        System.arraycopy(counts, at, counts, at + 1, moved);
+        System.arraycopy(deltas, at, deltas, at + 1, moved);
+        System.arraycopy(lengths, at, lengths, at + 1, moved);
+        chunkCount++;
+        encode(at, values, 0, count);
+    }
+
+    private void removeChunk(int at) {
+        int moved = chunkCount - at - 1;
+        System.arraycopy(firsts, at + 1, firsts, at, moved);
+        System.arraycopy(lasts, at + 1, lasts, at, moved);
+        System.arraycopy(counts, at + 1, counts, at, moved);
+        System.arraycopy(deltas, at + 1, deltas, at, moved);
+        System.arraycopy(lengths, at + 1, lengths, at, moved);
+        chunkCount--;
+        deltas[chunkCount] = null;
+    }
+}
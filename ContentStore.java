@@ -0,0 +1,157 @@
+package com.klpbbs.storage;
+
+import com.klpbbs.support.DirectBufferPool;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// 按内容寻址的文件存储：边读边算 SHA-256，文件落在 <root>/ab/cd/<sha256>，相同内容只存一份
+@Component
+public class ContentStore {
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${klpbbs.storage.root:uploads}")
+    private String rootDir;
+
+    @Value("${klpbbs.storage.max-file-bytes:1073741824}")
+    private long maxFileBytes;
+
+    @Value("${klpbbs.storage.buffers:32}")
+    private int bufferCount;
+
+    @Value("${klpbbs.storage.buffer-bytes:262144}")
+    private int bufferBytes;
+
+    @Value("${klpbbs.storage.buffer-wait-ms:5000}")
+    private long bufferWaitMs;
+
+    private Path root;
+    private Path tmp;
+    private DirectBufferPool bufferPool;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(rootDir).toAbsolutePath();
+        tmp = Files.createDirectories(root.resolve("tmp"));
+        bufferPool = new DirectBufferPool(bufferCount, bufferBytes);
+    }
+
+    // expectedSha256 由客户端给出且内容已存在时，只校验哈希不落盘
+    public StoredContent store(ReadableByteChannel in, String expectedSha256) throws IOException {
+        String expected = expectedSha256 == null ? null : expectedSha256.toLowerCase();
+        if (expected != null && SHA256.matcher(expected).matches() && Files.exists(pathOf(expected))) {
+            ByteBuffer buffer = acquireBuffer();
+            try {
+                MessageDigest digest = sha256();
+                long size = copy(in, null, digest, buffer);
+                String actual = HexFormat.of().formatHex(digest.digest());
+                if (!actual.equals(expected)) {
+                    throw new RuntimeException("Content hash mismatch");
+                }
+                return new StoredContent(actual, size, pathOf(actual), true);
+            } finally {
+                bufferPool.release(buffer);
+            }
+        }
+
+        Path temp = Files.createTempFile(tmp, "upload-", ".part");
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                size = copy(in, out, digest, buffer);
+                out.force(false);
+            }
+            String sha = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(sha);
+            if (Files.exists(target)) {
+                Files.delete(temp);
+                return new StoredContent(sha, size, target, true);
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // 并发上传了相同内容
+                Files.delete(temp);
+                return new StoredContent(sha, size, target, true);
+            }
+            return new StoredContent(sha, size, target, false);
+        } finally {
+            bufferPool.release(buffer);
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Path pathOf(String sha256) {
+        if (!SHA256.matcher(sha256).matches()) {
+            throw new RuntimeException("Invalid content hash");
+        }
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    // 存储路径的文件名就是内容哈希
+    public String sha256Of(Path path) {
+        String name = path.getFileName().toString();
+        return SHA256.matcher(name).matches() ? name : null;
+    }
+
+    private long copy(ReadableByteChannel in, FileChannel out, MessageDigest digest, ByteBuffer buffer) throws IOException {
+        long size = 0;
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            size += read;
+            if (size > maxFileBytes) {
+                throw new RuntimeException("File too large");
+            }
+            buffer.flip();
+            digest.update(buffer.duplicate());
+            if (out != null) {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            buffer.clear();
+        }
+        return size;
+    }
+
+    private ByteBuffer acquireBuffer() throws IOException {
+        try {
+            ByteBuffer buffer = bufferPool.acquire(bufferWaitMs, TimeUnit.MILLISECONDS);
+            if (buffer == null) {
+                throw new RuntimeException("Upload capacity exhausted");
+            }
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an upload buffer", e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
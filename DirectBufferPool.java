@@ -0,0 +1,36 @@
+package com.klpbbs.support;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// 固定数量的堆外缓冲区，池子空了说明并发 I/O 已经饱和，调用方等待或失败，而不是继续分配
+public final class DirectBufferPool {
+
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    public DirectBufferPool(int count, int bufferBytes) {
+        buffers = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            buffers.add(ByteBuffer.allocateDirect(bufferBytes));
+        }
+    }
+
+    // 超时返回 null
+    public ByteBuffer acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        ByteBuffer buffer = buffers.poll(timeout, unit);
+        if (buffer != null) {
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        buffers.offer(buffer);
+    }
+
+    public int available() {
+        return buffers.size();
+    }
+}
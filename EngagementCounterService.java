@@ -0,0 +1,362 @@
+package com.klpbbs.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// 互动计数：事件先追加到本地日志再累加到内存，定期合并成每帖一条 UPDATE 写回
+// 日志每 sync-interval-ms 才 fsync 一次，进程崩溃时最近这段时间内接受的事件可能丢失；
+// 已经 fsync 的事件在落库成功之前一直保留在日志段里，重启后重放，保证至少计入一次
+@Component
+public class EngagementCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(EngagementCounterService.class);
+
+    private static final String UPDATE_COUNTERS_SQL = "UPDATE post SET views = views + ?, likes = likes + ?, "
+            + "comments = comments + ?, shares = shares + ?, collections = collections + ? WHERE id = ?";
+
+    private static final EngagementType[] TYPES = EngagementType.values();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired(required = false)
+    private List<EngagementListener> listeners = Collections.emptyList();
+
+    @Value("${klpbbs.engagement.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${klpbbs.engagement.flush-threshold:10000}")
+    private long flushThreshold;
+
+    @Value("${klpbbs.engagement.max-pending-posts:50000}")
+    private int maxPendingPosts;
+
+    @Value("${klpbbs.engagement.batch-size:500}")
+    private int batchSize;
+
+    @Value("${klpbbs.engagement.journal.enabled:true}")
+    private boolean journalEnabled;
+
+    @Value("${klpbbs.engagement.journal.dir:data/engagement-journal}")
+    private String journalDir;
+
+    @Value("${klpbbs.engagement.journal.buffer-bytes:1048576}")
+    private int journalBufferBytes;
+
+    @Value("${klpbbs.engagement.journal.sync-interval-ms:50}")
+    private long journalSyncIntervalMs;
+
+    // 事件写日志和累加计数在同一把锁内完成，刷新时在锁内整体换出 pending
+    private final ReentrantLock recordLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile ConcurrentHashMap<Long, AtomicLongArray> pending = new ConcurrentHashMap<>();
+    private volatile Map<Long, AtomicLongArray> inFlight = Collections.emptyMap();
+    private volatile long pendingEvents;
+
+    // 已关闭但对应增量尚未成功落库的日志段，guarded by flushLock
+    private final List<Path> retainedSegments = new ArrayList<>();
+
+    // 换出批次时加一成为奇数，批次落库或还回后再加一；读取前后版本相同且为偶数说明期间没有批次在途
+    private final AtomicLong flushVersion = new AtomicLong();
+
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final AtomicLong flushedEvents = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile long lastFlushDurationMs;
+
+    private EngagementJournal journal;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean stopped;
+
+    @PostConstruct
+    public void start() throws IOException {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "engagement-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (journalEnabled) {
+            journal = new EngagementJournal(Paths.get(journalDir), journalBufferBytes);
+            List<Path> leftovers = journal.existingSegments();
+            journal.open(leftovers.isEmpty() ? 0 : journal.sequenceOf(leftovers.get(leftovers.size() - 1)));
+            // 上次未落库的事件重新计入，下一次刷新成功后再删除这些段
+            for (Path segment : leftovers) {
+                EngagementJournal.replay(segment, (postId, type, delta) -> addLocked(postId, type.ordinal(), delta));
+                retainedSegments.add(segment);
+            }
+            if (!leftovers.isEmpty()) {
+                log.info("Replayed {} engagement journal segments, {} pending events", leftovers.size(), pendingEvents);
+            }
+            scheduler.scheduleWithFixedDelay(this::syncJournalQuietly,
+                    journalSyncIntervalMs, journalSyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        stopped = true;
+        scheduler.shutdown();
+        scheduler.awaitTermination(flushIntervalMs * 2, TimeUnit.MILLISECONDS);
+        // 关闭前把剩余增量全部写回，失败的部分留在日志里下次启动重放
+        flush();
+        if (journal != null) {
+            recordLock.lock();
+            try {
+                journal.close();
+            } finally {
+                recordLock.unlock();
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.warn("{} posts still have unflushed engagement counters on shutdown", pending.size());
+        }
+    }
+
+    public void record(Long postId, EngagementType type) {
+        record(postId, type, 1);
+    }
+
+    public void record(Long postId, EngagementType type, int delta) {
+        recordLock.lock();
+        try {
+            if (journal != null) {
+                journal.append(postId, type, delta);
+            }
+            addLocked(postId, type.ordinal(), delta);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal engagement event", e);
+        } finally {
+            recordLock.unlock();
+        }
+        for (EngagementListener listener : listeners) {
+            listener.onEngagement(postId, type, delta);
+        }
+
+        // 关闭后不再提交刷新任务，剩余的增量由 stop() 写回
+        if (!stopped && (pendingEvents >= flushThreshold || pending.size() >= maxPendingPosts)
+                && flushQueued.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                flushQueued.set(false);
+            }
+        }
+    }
+
+    // 尚未落库的增量，按 EngagementType 的顺序排列
+    // 在 recordLock 内读取，不会赶上 pending 换出为 inFlight 的中间状态
+    public long[] pendingDelta(Long postId) {
+        long[] delta = new long[TYPES.length];
+        recordLock.lock();
+        try {
+            accumulate(delta, inFlight.get(postId));
+            accumulate(delta, pending.get(postId));
+        } finally {
+            recordLock.unlock();
+        }
+        return delta;
+    }
+
+    // 执行期间不会有批次落库或还回，适合把数据库里的计数和 pendingDelta 合起来读
+    public <T> T whileFlushPaused(Supplier<T> action) {
+        flushLock.lock();
+        try {
+            return action.get();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // 不暂停刷新的版本，给请求线程用：赶上刷新就重读，几次都赶上时返回最后一次结果，可能差一个批次的增量
+    public <T> T readWithoutPausingFlush(Supplier<T> action) {
+        T result = null;
+        for (int attempt = 0; attempt < 3; attempt++) {
+            long before = flushVersion.get();
+            result = action.get();
+            if ((before & 1) == 0 && flushVersion.get() == before) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    public EngagementMetrics metrics() {
+        int retained;
+        flushLock.lock();
+        try {
+            retained = retainedSegments.size();
+        } finally {
+            flushLock.unlock();
+        }
+        int pendingPosts = pending.size();
+        return new EngagementMetrics(pendingPosts, pendingEvents, inFlight.size(), retained,
+                flushedEvents.get(), failedFlushes.get(), lastFlushDurationMs,
+                pendingPosts >= maxPendingPosts || pendingEvents >= flushThreshold * 2);
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushQueued.set(false);
+
+            Map<Long, AtomicLongArray> batch;
+            long batchEvents;
+            recordLock.lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                if (journal != null) {
+                    retainedSegments.add(journal.rotate());
+                }
+                batch = pending;
+                batchEvents = pendingEvents;
+                inFlight = batch;
+                flushVersion.incrementAndGet();
+                pending = new ConcurrentHashMap<>();
+                pendingEvents = 0;
+            } catch (IOException e) {
+                log.error("Failed to rotate engagement journal, skipping flush", e);
+                return;
+            } finally {
+                recordLock.unlock();
+            }
+
+            long started = System.nanoTime();
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+                flushedEvents.addAndGet(batchEvents);
+                deleteRetainedSegments();
+            } catch (RuntimeException e) {
+                // 事务整体回滚，增量还给 pending，对应的日志段保留到下次刷新成功
+                failedFlushes.incrementAndGet();
+                restore(batch, batchEvents);
+                log.warn("Failed to flush engagement counters for {} posts, will retry", batch.size(), e);
+            } finally {
+                inFlight = Collections.emptyMap();
+                flushVersion.incrementAndGet();
+                lastFlushDurationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void addLocked(long postId, int slot, long delta) {
+        pending.computeIfAbsent(postId, id -> new AtomicLongArray(TYPES.length)).addAndGet(slot, delta);
+        pendingEvents++;
+    }
+
+    // 批次里的增量合并回 pending，事件数按换出时的计数还回去，而不是按非零的计数槽
+    private void restore(Map<Long, AtomicLongArray> batch, long batchEvents) {
+        recordLock.lock();
+        try {
+            batch.forEach((postId, counters) -> {
+                AtomicLongArray target = pending.computeIfAbsent(postId, id -> new AtomicLongArray(TYPES.length));
+                for (int slot = 0; slot < TYPES.length; slot++) {
+                    long delta = counters.get(slot);
+                    if (delta != 0) {
+                        target.addAndGet(slot, delta);
+                    }
+                }
+            });
+            pendingEvents += batchEvents;
+            inFlight = Collections.emptyMap();
+        } finally {
+            recordLock.unlock();
+        }
+    }
+
+    private void deleteRetainedSegments() {
+        for (Path segment : retainedSegments) {
+            try {
+                EngagementJournal.delete(segment);
+            } catch (IOException e) {
+                // 删除失败只会导致重启后重复计入，属于至少一次语义允许的范围
+                log.warn("Failed to delete engagement journal segment {}", segment, e);
+            }
+        }
+        retainedSegments.clear();
+    }
+
+    private void writeBatch(Map<Long, AtomicLongArray> batch) {
+        List<Object[]> args = new ArrayList<>(batch.size());
+        batch.forEach((postId, counters) -> {
+            Object[] row = new Object[TYPES.length + 1];
+            boolean changed = false;
+            for (int slot = 0; slot < TYPES.length; slot++) {
+                long delta = counters.get(slot);
+                row[slot] = delta;
+                changed |= delta != 0;
+            }
+            row[TYPES.length] = postId;
+            if (changed) {
+                args.add(row);
+            }
+        });
+        for (int i = 0; i < args.size(); i += batchSize) {
+            jdbcTemplate.batchUpdate(UPDATE_COUNTERS_SQL, args.subList(i, Math.min(i + batchSize, args.size())));
+        }
+    }
+
+    private void syncJournalQuietly() {
+        recordLock.lock();
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            log.error("Failed to sync engagement journal", e);
+        } finally {
+            recordLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Unexpected error while flushing engagement counters", e);
+        }
+    }
+
+    private static void accumulate(long[] target, AtomicLongArray counters) {
+        if (counters == null) {
+            return;
+        }
+        for (int slot = 0; slot < target.length; slot++) {
+            target[slot] += counters.get(slot);
+        }
+    }
+}
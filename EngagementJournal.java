@@ -0,0 +1,131 @@
+package com.klpbbs.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// 互动事件的追加日志，调用方负责加锁
+class EngagementJournal {
+
+    interface RecordHandler {
+        void handle(long postId, EngagementType type, int delta);
+    }
+
+    private static final String SEGMENT_PREFIX = "engagement-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_SIZE = Long.BYTES + 1 + Integer.BYTES;
+
+    private static final EngagementType[] TYPES = EngagementType.values();
+
+    private final Path directory;
+    private final ByteBuffer buffer;
+
+    private long sequence;
+    private Path segment;
+    private FileChannel channel;
+
+    EngagementJournal(Path directory, int bufferSize) {
+        this.directory = directory;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, RECORD_SIZE) / RECORD_SIZE * RECORD_SIZE);
+    }
+
+    List<Path> existingSegments() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    void open(long startSequence) throws IOException {
+        sequence = startSequence;
+        openSegment();
+    }
+
+    long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    void append(long postId, EngagementType type, int delta) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            sync();
+        }
+        buffer.putLong(postId);
+        buffer.put((byte) type.ordinal());
+        buffer.putInt(delta);
+    }
+
+    void sync() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        channel.force(false);
+    }
+
+    // 切换到新段并关闭当前段，返回被关闭的段；新段打开失败时继续写当前段
+    Path rotate() throws IOException {
+        sync();
+        FileChannel closing = channel;
+        Path closed = segment;
+        openSegment();
+        try {
+            closing.close();
+        } catch (IOException e) {
+            // 内容已经 force 到磁盘，关闭失败不影响这个段的重放
+        }
+        return closed;
+    }
+
+    void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    static void replay(Path path, RecordHandler handler) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            // 进程崩溃时最后一条记录可能只写了一半，直接忽略
+            long usable = in.size() / RECORD_SIZE * RECORD_SIZE;
+            if (usable == 0) {
+                return;
+            }
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, usable);
+            while (mapped.hasRemaining()) {
+                long postId = mapped.getLong();
+                int ordinal = mapped.get();
+                int delta = mapped.getInt();
+                if (ordinal >= 0 && ordinal < TYPES.length) {
+                    handler.handle(postId, TYPES[ordinal], delta);
+                }
+            }
+        }
+    }
+
+    static void delete(Path path) throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private void openSegment() throws IOException {
+        long nextSequence = sequence + 1;
+        Path nextSegment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(nextSegment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        sequence = nextSequence;
+        segment = nextSegment;
+    }
+}
@@ -0,0 +1,7 @@
+package com.klpbbs.service;
+
+// 互动事件进入计数管道后同步回调，实现必须足够轻量，不能阻塞请求线程
+public interface EngagementListener {
+
+    void onEngagement(long postId, EngagementType type, int delta);
+}
@@ -0,0 +1,57 @@
+package com.klpbbs.service;
+
+public class EngagementMetrics {
+
+    private final int pendingPosts;
+    private final long pendingEvents;
+    private final int inFlightPosts;
+    private final int retainedSegments;
+    private final long flushedEvents;
+    private final long failedFlushes;
+    private final long lastFlushDurationMs;
+    private final boolean saturated;
+
+    public EngagementMetrics(int pendingPosts, long pendingEvents, int inFlightPosts, int retainedSegments,
+                             long flushedEvents, long failedFlushes, long lastFlushDurationMs, boolean saturated) {
+        this.pendingPosts = pendingPosts;
+        this.pendingEvents = pendingEvents;
+        this.inFlightPosts = inFlightPosts;
+        this.retainedSegments = retainedSegments;
+        this.flushedEvents = flushedEvents;
+        this.failedFlushes = failedFlushes;
+        this.lastFlushDurationMs = lastFlushDurationMs;
+        this.saturated = saturated;
+    }
+
+    public int getPendingPosts() {
+        return pendingPosts;
+    }
+
+    public long getPendingEvents() {
+        return pendingEvents;
+    }
+
+    public int getInFlightPosts() {
+        return inFlightPosts;
+    }
+
+    public int getRetainedSegments() {
+        return retainedSegments;
+    }
+
+    public long getFlushedEvents() {
+        return flushedEvents;
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes;
+    }
+
+    public long getLastFlushDurationMs() {
+        return lastFlushDurationMs;
+    }
+
+    public boolean isSaturated() {
+        return saturated;
+    }
+}
@@ -0,0 +1,19 @@
+package com.klpbbs.service;
+
+public enum EngagementType {
+    VIEW("views"),
+    LIKE("likes"),
+    COMMENT("comments"),
+    SHARE("shares"),
+    COLLECTION("collections");
+
+    private final String column;
+
+    EngagementType(String column) {
+        this.column = column;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,49 @@
+package com.klpbbs.support;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+// Caffeine 缓存的薄封装：W-TinyLFU 淘汰、写入后过期、同一个 key 的并发加载合并成一次
+public final class EntityCache<K, V> {
+
+    private final String name;
+    private final Cache<K, V> cache;
+
+    public EntityCache(String name, long maximumSize, Duration ttl) {
+        this.name = name;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    // loader 返回 null 时不缓存
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return cache.get(key, loader);
+    }
+
+    public V getIfPresent(K key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(K key, V value) {
+        cache.put(key, value);
+    }
+
+    // 立即失效一次，提交后再失效一次，防止事务提交前有并发读把旧值重新放回缓存
+    public void invalidateAfterCommit(K key) {
+        cache.invalidate(key);
+        AfterCommit.run(() -> cache.invalidate(key));
+    }
+
+    public CacheMetrics metrics() {
+        CacheStats stats = cache.stats();
+        return new CacheMetrics(name, cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.loadCount(), stats.evictionCount(), stats.averageLoadPenalty() / 1_000_000d);
+    }
+}
@@ -0,0 +1,149 @@
+package com.klpbbs.service;
+
+import com.klpbbs.entity.Post;
+import com.klpbbs.model.Group;
+import com.klpbbs.model.User;
+import com.klpbbs.support.CacheMetrics;
+import com.klpbbs.support.EntityCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+// 读多写少实体的二级缓存。缓存里的对象是脱管的，调用方不能修改，懒加载的关联也不会随缓存一起返回
+// 用户只缓存去掉密码哈希和重置令牌的副本，需要这些字段的地方直接查库
+@Component
+public class EntityCacheService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${klpbbs.cache.posts.max-size:20000}")
+    private long postsMaxSize;
+
+    @Value("${klpbbs.cache.users.max-size:20000}")
+    private long usersMaxSize;
+
+    @Value("${klpbbs.cache.groups.max-size:5000}")
+    private long groupsMaxSize;
+
+    @Value("${klpbbs.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private EntityCache<Long, Post> posts;
+    private EntityCache<Long, Group> groups;
+    private EntityCache<Long, User> users;
+    // username:/email:/phone: 前缀的自然键 -> 用户 id
+    private EntityCache<String, Long> userKeys;
+
+    @PostConstruct
+    public void init() {
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        posts = new EntityCache<>("posts", postsMaxSize, ttl);
+        groups = new EntityCache<>("groups", groupsMaxSize, ttl);
+        users = new EntityCache<>("users", usersMaxSize, ttl);
+        userKeys = new EntityCache<>("userKeys", usersMaxSize * 3, ttl);
+    }
+
+    public Post getPost(Long postId, Supplier<Post> loader) {
+        return posts.get(postId, id -> detached(loader.get()));
+    }
+
+    public void evictPost(Long postId) {
+        posts.invalidateAfterCommit(postId);
+    }
+
+    public Group getGroup(Long groupId, Supplier<Group> loader) {
+        return groups.get(groupId, id -> detached(loader.get()));
+    }
+
+    public void evictGroup(Long groupId) {
+        groups.invalidateAfterCommit(groupId);
+    }
+
+    public User getUser(Long userId, Supplier<User> loader) {
+        return users.get(userId, id -> withoutSecrets(loader.get()));
+    }
+
+    public User getUserByUsername(String username, Supplier<User> loader) {
+        return getUserByKey("username:" + username, loader);
+    }
+
+    public User getUserByEmail(String email, Supplier<User> loader) {
+        return getUserByKey("email:" + email, loader);
+    }
+
+    public User getUserByPhone(String phone, Supplier<User> loader) {
+        return getUserByKey("phone:" + phone, loader);
+    }
+
+    // 旧的自然键从缓存里的副本取，新的从传入的用户取，改用户名或邮箱后两边都会失效
+    public void evictUser(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        evictUserKeys(users.getIfPresent(user.getId()));
+        evictUserKeys(user);
+        users.invalidateAfterCommit(user.getId());
+    }
+
+    // 只改了非自然键字段（如积分）时按 id 失效即可
+    public void evictUserId(Long userId) {
+        users.invalidateAfterCommit(userId);
+    }
+
+    public List<CacheMetrics> metrics() {
+        return Arrays.asList(posts.metrics(), groups.metrics(), users.metrics(), userKeys.metrics());
+    }
+
+    private User getUserByKey(String key, Supplier<User> loader) {
+        Long userId = userKeys.get(key, k -> {
+            User user = withoutSecrets(loader.get());
+            if (user == null) {
+                return null;
+            }
+            users.put(user.getId(), user);
+            return user.getId();
+        });
+        // 按自然键解析出 id 后，用户本身可能已被淘汰，此时重新走一次加载
+        return userId == null ? null : users.get(userId, id -> withoutSecrets(loader.get()));
+    }
+
+    private void evictUserKeys(User user) {
+        if (user == null) {
+            return;
+        }
+        if (user.getUsername() != null) {
+            userKeys.invalidateAfterCommit("username:" + user.getUsername());
+        }
+        if (user.getEmail() != null) {
+            userKeys.invalidateAfterCommit("email:" + user.getEmail());
+        }
+        if (user.getPhone() != null) {
+            userKeys.invalidateAfterCommit("phone:" + user.getPhone());
+        }
+    }
+
+    private static User withoutSecrets(User user) {
+        if (user == null) {
+            return null;
+        }
+        User copy = new User();
+        BeanUtils.copyProperties(user, copy, "password", "resetToken", "resetTokenExpiry");
+        return copy;
+    }
+
+    private <T> T detached(T entity) {
+        if (entity != null && entityManager.contains(entity)) {
+            entityManager.detach(entity);
+        }
+        return entity;
+    }
+}
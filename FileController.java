@@ -0,0 +1,85 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.model.File;
+import com.klpbbs.service.AuthService;
+import com.klpbbs.service.FileService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/files")
+public class FileController {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileDownloadHandler fileDownloadHandler;
+
+    @Autowired
+    private AuthService authService;
+
+    // 请求体就是文件内容（application/octet-stream），可选的 X-Content-SHA256 用于秒传
+    @PostMapping
+    public ResponseEntity<?> uploadFile(HttpServletRequest request, @RequestHeader(HttpHeaders.AUTHORIZATION) String authorization,
+            @RequestParam(required = false) String filename,
+            @RequestHeader(value = "X-Content-SHA256", required = false) String sha256) throws IOException {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        File file = fileService.uploadFile(request.getInputStream(), filename, sha256, userId);
+        return ResponseEntity.ok(file);
+    }
+
+    @PostMapping(value = "/multipart", consumes = "multipart/form-data")
+    public ResponseEntity<?> uploadMultipartFile(@RequestParam("file") MultipartFile multipartFile,
+            @RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        File file = fileService.uploadFile(multipartFile, userId);
+        return ResponseEntity.ok(file);
+    }
+
+    @GetMapping("/{fileId}")
+    public ResponseEntity<?> getFileById(@PathVariable Long fileId) {
+        File file = fileService.getFileById(fileId);
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(file);
+    }
+
+    // size 为缩略图的最长边像素，只对图片有效
+    @GetMapping("/{fileId}/content")
+    public void downloadFile(@PathVariable Long fileId, @RequestParam(required = false) Integer size,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        File file = fileService.getFileById(fileId);
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (size != null && size > 0 && fileService.isImage(file.getFilename())) {
+            fileDownloadHandler.serveVariant(file, size, request, response);
+        } else {
+            fileDownloadHandler.serve(file, request, response);
+        }
+    }
+
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<?> getFilesByUser(@PathVariable Long userId) {
+        List<File> files = fileService.getFilesByUser(userId);
+        return ResponseEntity.ok(files);
+    }
+}
@@ -0,0 +1,214 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.model.File;
+import com.klpbbs.storage.ContentStore;
+import com.klpbbs.storage.ImageDerivativeService;
+import com.klpbbs.storage.MappedFileCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+// 文件下载：ETag 取内容哈希，支持单段 Range；大文件交给 Tomcat sendfile 或 FileChannel.transferTo，小文件走内存映射缓存
+@Component
+public class FileDownloadHandler {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // 类型由上传者给的文件名推断，只有这些不会被浏览器当成页面执行的类型才内联展示，其余一律作为附件下载
+    private static final Set<MediaType> INLINE_TYPES = Set.of(MediaType.IMAGE_PNG, MediaType.IMAGE_JPEG, MediaType.IMAGE_GIF,
+            MediaType.valueOf("image/webp"), MediaType.APPLICATION_PDF);
+
+    @Autowired
+    private ContentStore contentStore;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Value("${klpbbs.download.mmap.max-file-bytes:262144}")
+    private long mmapMaxFileBytes;
+
+    @Value("${klpbbs.download.mmap.max-total-bytes:134217728}")
+    private long mmapMaxTotalBytes;
+
+    @Value("${klpbbs.download.max-age-seconds:86400}")
+    private long maxAgeSeconds;
+
+    private MappedFileCache mappedFileCache;
+
+    @PostConstruct
+    public void init() {
+        mappedFileCache = new MappedFileCache(mmapMaxFileBytes, mmapMaxTotalBytes);
+    }
+
+    public void serve(File file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path path = Paths.get(file.getPath());
+        String sha256 = contentStore.sha256Of(path);
+        serve(path, file.getFilename(), sha256 == null ? null : "\"" + sha256 + "\"", request, response);
+    }
+
+    // 缩略图的 ETag 是原图哈希加尺寸，同样是强校验
+    public void serveVariant(File file, int size, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path variant = imageDerivativeService.variant(Paths.get(file.getPath()), size);
+        String sha256 = contentStore.sha256Of(Paths.get(file.getPath()));
+        String name = variant.getFileName().toString();
+        String etag = sha256 == null ? null : "\"" + sha256 + name.substring(name.indexOf('.')) + "\"";
+        serve(variant, baseName(file.getFilename()) + name.substring(name.lastIndexOf('.')), etag, request, response);
+    }
+
+    private void serve(Path path, String filename, String etag, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length;
+        try {
+            length = Files.size(path);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + maxAgeSeconds);
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        MediaType mediaType = MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        boolean inline = INLINE_TYPES.contains(mediaType);
+        response.setContentType((inline ? mediaType : MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, (inline ? ContentDisposition.inline() : ContentDisposition.attachment())
+                .filename(filename, StandardCharsets.UTF_8).build().toString());
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] parsed = parseRange(range, length);
+            if (parsed == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (parsed.length == 2) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (mappedFileCache.accepts(length)) {
+            ByteBuffer buffer = mappedFileCache.get(path);
+            buffer.position((int) start).limit((int) (end + 1));
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            return;
+        }
+
+        // Tomcat 支持时由容器在写响应时直接 sendfile，数据不经过 JVM 堆
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    // 返回 {start, end}；不是单段的 bytes 范围时返回空数组表示忽略 Range；无法满足返回 null
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static String baseName(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot > 0 ? filename.substring(0, dot) : filename;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,12 +3,19 @@ package com.klpbbs.service;
 import com.klpbbs.model.File;
 import com.klpbbs.model.User;
 import com.klpbbs.repository.FileRepository;
+import com.klpbbs.storage.ContentStore;
+import com.klpbbs.storage.ImageDerivativeService;
+import com.klpbbs.storage.StoredContent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File as IoFile;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -18,30 +25,42 @@ public class FileService {
     @Autowired
     private FileRepository fileRepository;
 
+    @Autowired
+    private ContentStore contentStore;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
     public File uploadFile(MultipartFile multipartFile, Long userId) {
-        try {
-            // 保存文件到服务器
-            String filename = multipartFile.getOriginalFilename();
-            IoFile file = new IoFile("uploads/" + filename);
-            multipartFile.transferTo(file);
-
-            // 保存文件记录到数据库
-            File dbFile = new File();
-            dbFile.setFilename(filename);
-            dbFile.setPath(file.getAbsolutePath());
-            dbFile.setUploadDate(LocalDateTime.now());
-
-            User user = new User();
-            user.setId(userId);
-            dbFile.setUploader(user);
-
-            return fileRepository.save(dbFile);
+        try (InputStream in = multipartFile.getInputStream()) {
+            return uploadFile(in, multipartFile.getOriginalFilename(), null, userId);
         } catch (IOException e) {
-            e.printStackTrace();
-            return null;
+            throw new RuntimeException("Failed to store file", e);
         }
     }
 
+    // 直接读请求体写入内容寻址存储，不经过 multipart 的临时文件
+    public File uploadFile(InputStream body, String filename, String expectedSha256, Long userId) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(body);
+        StoredContent content = contentStore.store(channel, expectedSha256);
+        String displayName = displayName(filename, content.getSha256());
+        if (isImage(displayName)) {
+            imageDerivativeService.generateAllAsync(content.getPath());
+        }
+
+        // 保存文件记录到数据库，同样内容的多条记录指向同一个文件
+        File dbFile = new File();
+        dbFile.setFilename(displayName);
+        dbFile.setPath(content.getPath().toString());
+        dbFile.setUploadDate(LocalDateTime.now());
+
+        User user = new User();
+        user.setId(userId);
+        dbFile.setUploader(user);
+
+        return fileRepository.save(dbFile);
+    }
+
     public List<File> getFilesByUser(Long userId) {
         return fileRepository.findByUploaderId(userId);
     }
@@ -49,4 +68,19 @@ public class FileService {
     public File getFileById(Long fileId) {
         return fileRepository.findById(fileId).orElse(null);
     }
-}
\ No newline at end of file
+
+    public boolean isImage(String filename) {
+        return MediaTypeFactory.getMediaType(filename)
+                .map(mediaType -> "image".equals(mediaType.getType()) && !"svg+xml".equals(mediaType.getSubtype()))
+                .orElse(false);
+    }
+
+    // 原始文件名只用于展示，去掉客户端可能带上的目录部分
+    private static String displayName(String filename, String sha256) {
+        if (filename == null || filename.isBlank()) {
+            return sha256;
+        }
+        String name = Paths.get(filename.replace('\\', '/')).getFileName().toString();
+        return name.isBlank() ? sha256 : name;
+    }
+}
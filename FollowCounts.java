@@ -0,0 +1,20 @@
+package com.klpbbs.service;
+
+public class FollowCounts {
+
+    private final int followers;
+    private final int followings;
+
+    public FollowCounts(int followers, int followings) {
+        this.followers = followers;
+        this.followings = followings;
+    }
+
+    public int getFollowers() {
+        return followers;
+    }
+
+    public int getFollowings() {
+        return followings;
+    }
+}
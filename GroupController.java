@@ -1,7 +1,8 @@
 package com.klpbbs.controller;
 
-import com.klpbbs.model.Group;
+import com.klpbbs.service.GroupListItem;
 import com.klpbbs.service.GroupService;
+import com.klpbbs.support.CursorPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,37 +18,69 @@ public class GroupController {
 
     @PostMapping
     public ResponseEntity<?> createGroup(@RequestParam String name, @RequestParam String description, @RequestParam Long creatorId) {
-        Group group = groupService.createGroup(name, description, creatorId);
+        GroupListItem group = groupService.createGroup(name, description, creatorId);
         return ResponseEntity.ok(group);
     }
 
     @PostMapping("/{groupId}/join")
     public ResponseEntity<?> joinGroup(@PathVariable Long groupId, @RequestParam Long userId) {
-        Group group = groupService.joinGroup(userId, groupId);
-        return ResponseEntity.ok(group);
+        groupService.joinGroup(userId, groupId);
+        return ResponseEntity.noContent().build();
     }
 
     @PostMapping("/{groupId}/leave")
     public ResponseEntity<?> leaveGroup(@PathVariable Long groupId, @RequestParam Long userId) {
-        Group group = groupService.leaveGroup(userId, groupId);
-        return ResponseEntity.ok(group);
+        groupService.leaveGroup(userId, groupId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // 请求体为用户 id 数组，返回实际新加入的人数；可以把任意用户拉进群，只给管理员用
+    @RequiresPermission("admin.groups")
+    @PostMapping("/{groupId}/members/bulk")
+    public ResponseEntity<?> joinGroupBulk(@PathVariable Long groupId, @RequestBody List<Long> userIds) {
+        if (userIds.size() > 100000) {
+            return ResponseEntity.badRequest().body("Too many user ids");
+        }
+        int joined = groupService.joinGroupBulk(groupId, userIds);
+        return ResponseEntity.ok(joined);
+    }
+
+    // 分页参数 after 为上一页最后一个用户 id
+    @GetMapping("/{groupId}/members")
+    public ResponseEntity<?> getMembers(@PathVariable Long groupId,
+                                        @RequestParam(defaultValue = "0") long after,
+                                        @RequestParam(defaultValue = "50") int limit) {
+        List<Long> userIds = groupService.getMemberIds(groupId, after, Math.min(limit, 500));
+        return ResponseEntity.ok(userIds);
     }
 
+    @GetMapping("/{groupId}/members/count")
+    public ResponseEntity<?> getMemberCount(@PathVariable Long groupId) {
+        return ResponseEntity.ok(groupService.getMemberCount(groupId));
+    }
+
+    @GetMapping("/{groupId}/members/{userId}")
+    public ResponseEntity<?> isMember(@PathVariable Long groupId, @PathVariable Long userId) {
+        return ResponseEntity.ok(groupService.isMember(groupId, userId));
+    }
+
+    // 按最近活跃时间倒序，cursor 取上一页返回的 nextCursor
     @GetMapping
-    public ResponseEntity<?> getAllGroups() {
-        List<Group> groups = groupService.getAllGroups();
-        return ResponseEntity.ok(groups);
+    public ResponseEntity<?> getAllGroups(@RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "20") int limit) {
+        CursorPage<GroupListItem> page = groupService.listGroups(cursor, limit);
+        return ResponseEntity.ok(page);
     }
 
     @GetMapping("/{groupId}")
     public ResponseEntity<?> getGroupById(@PathVariable Long groupId) {
-        Group group = groupService.getGroupById(groupId);
+        GroupListItem group = groupService.getGroupSummary(groupId);
         return ResponseEntity.ok(group);
     }
 
     @GetMapping("/user/{userId}")
     public ResponseEntity<?> getGroupsByUser(@PathVariable Long userId) {
-        List<Group> groups = groupService.getGroupsByUser(userId);
+        List<GroupListItem> groups = groupService.getGroupsByUser(userId);
         return ResponseEntity.ok(groups);
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.klpbbs.service;
+
+import java.time.LocalDateTime;
+
+public class GroupListItem {
+
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final int memberCount;
+    private final LocalDateTime lastActivityTime;
+
+    public GroupListItem(Long id, String name, String description, Integer memberCount, LocalDateTime lastActivityTime) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.memberCount = memberCount == null ? 0 : memberCount;
+        this.lastActivityTime = lastActivityTime;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getMemberCount() {
+        return memberCount;
+    }
+
+    public LocalDateTime getLastActivityTime() {
+        return lastActivityTime;
+    }
+}
@@ -3,6 +3,7 @@ package com.klpbbs.model;
 import javax.persistence.*;
 
 @Entity
+@Table(name = "group_member", uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "group_id"}))
 public class GroupMember {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
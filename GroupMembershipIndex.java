@@ -0,0 +1,210 @@
+package com.klpbbs.service;
+
+import com.klpbbs.support.AfterCommit;
+import com.klpbbs.support.CompressedLongSet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 群组成员的内存索引：每个群一份压缩的成员 id 集合，每个用户一份所在群 id 集合
+// group_member 表为准，启动时全量加载，之后随成员变更在事务提交后更新
+@Component
+public class GroupMembershipIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupMembershipIndex.class);
+
+    private static final String WARM_SQL = "SELECT group_id, user_id FROM group_member ORDER BY group_id, user_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${klpbbs.groups.warm-fetch-size:10000}")
+    private int warmFetchSize;
+
+    @Value("${klpbbs.groups.warm-retry-seconds:30}")
+    private long warmRetrySeconds;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, CompressedLongSet> members = new HashMap<>();
+    private final Map<Long, CompressedLongSet> groups = new HashMap<>();
+    // 预热期间退出的成员，group -> user；合并加载结果时跳过，预热完成后清空
+    private final Map<Long, Set<Long>> removedDuringWarm = new HashMap<>();
+
+    private volatile boolean ready;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "group-membership");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::warm);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isMember(Long groupId, Long userId) {
+        lock.readLock().lock();
+        try {
+            CompressedLongSet set = members.get(groupId);
+            return set != null && set.contains(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int memberCount(Long groupId) {
+        lock.readLock().lock();
+        try {
+            CompressedLongSet set = members.get(groupId);
+            return set == null ? 0 : set.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 按用户 id 升序分页，after 为上一页最后一个 id
+    public List<Long> members(Long groupId, long after, int limit) {
+        lock.readLock().lock();
+        try {
+            CompressedLongSet set = members.get(groupId);
+            return set == null ? new ArrayList<>() : set.page(after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Long> groupIds(Long userId) {
+        lock.readLock().lock();
+        try {
+            CompressedLongSet set = groups.get(userId);
+            return set == null ? new ArrayList<>() : set.page(Long.MIN_VALUE, set.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addAfterCommit(Long groupId, Collection<Long> userIds) {
+        // 排好序后新成员大多是追加到集合末尾
+        List<Long> added = new ArrayList<>(userIds);
+        added.sort(null);
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                CompressedLongSet set = set(members, groupId);
+                Set<Long> removed = ready ? null : removedDuringWarm.get(groupId);
+                for (Long userId : added) {
+                    set.add(userId);
+                    set(groups, userId).add(groupId);
+                    if (removed != null) {
+                        removed.remove(userId);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void removeAfterCommit(Long groupId, Long userId) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                removeFrom(members, groupId, userId);
+                removeFrom(groups, userId, groupId);
+                if (!ready) {
+                    removedDuringWarm.computeIfAbsent(groupId, id -> new HashSet<>()).add(userId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void warm() {
+        try {
+            // 按 group_id, user_id 排序读取，成员集合是升序追加
+            Map<Long, CompressedLongSet> loadedMembers = new HashMap<>();
+            Map<Long, CompressedLongSet> loadedGroups = new HashMap<>();
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(WARM_SQL);
+                statement.setFetchSize(warmFetchSize);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                long groupId = rs.getLong(1);
+                long userId = rs.getLong(2);
+                set(loadedMembers, groupId).add(userId);
+                set(loadedGroups, userId).add(groupId);
+            });
+
+            // 预热期间提交的变更已经写进内存，把加载的部分合并进去，跳过期间已经退出的
+            lock.writeLock().lock();
+            try {
+                loadedMembers.forEach((groupId, set) -> set.forEachAfter(Long.MIN_VALUE, userId -> {
+                    if (!isRemovedDuringWarm(groupId, userId)) {
+                        set(members, groupId).add(userId);
+                    }
+                    return true;
+                }));
+                loadedGroups.forEach((userId, set) -> set.forEachAfter(Long.MIN_VALUE, groupId -> {
+                    if (!isRemovedDuringWarm(groupId, userId)) {
+                        set(groups, userId).add(groupId);
+                    }
+                    return true;
+                }));
+                removedDuringWarm.clear();
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Group membership index warmed with {} groups", loadedMembers.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to warm group membership index, retrying in {}s", warmRetrySeconds, e);
+            scheduler.schedule(this::warm, warmRetrySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private boolean isRemovedDuringWarm(long groupId, long userId) {
+        Set<Long> removed = removedDuringWarm.get(groupId);
+        return removed != null && removed.contains(userId);
+    }
+
+    private static CompressedLongSet set(Map<Long, CompressedLongSet> sets, long id) {
+        return sets.computeIfAbsent(id, key -> new CompressedLongSet());
+    }
+
+    private static void removeFrom(Map<Long, CompressedLongSet> sets, long id, long value) {
+        CompressedLongSet set = sets.get(id);
+        if (set != null && set.remove(value) && set.isEmpty()) {
+            sets.remove(id);
+        }
+    }
+}
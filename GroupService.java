@@ -1,27 +1,72 @@
 package com.klpbbs.service;
 
+import com.klpbbs.entity.GroupSummary;
 import com.klpbbs.model.Group;
 import com.klpbbs.model.GroupMember;
 import com.klpbbs.model.User;
 import com.klpbbs.repository.GroupRepository;
 import com.klpbbs.repository.GroupMemberRepository;
+import com.klpbbs.repository.GroupSummaryRepository;
+import com.klpbbs.support.ActivityCursor;
+import com.klpbbs.support.CursorPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 @Service
 @Transactional
 public class GroupService {
 
+    private static final Logger log = LoggerFactory.getLogger(GroupService.class);
+
+    private static final int BULK_BATCH_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // (user_id, group_id) 上有唯一约束，并发加入也只会插入一行，返回 0 表示已经是成员
+    private static final String JOIN_SQL = "INSERT IGNORE INTO group_member (user_id, group_id, join_date) VALUES (?, ?, ?)";
+    private static final String LEAVE_SQL = "DELETE FROM group_member WHERE user_id = ? AND group_id = ?";
+    // 成员索引预热完成前直接查库
+    private static final String IS_MEMBER_SQL = "SELECT COUNT(*) FROM group_member WHERE group_id = ? AND user_id = ?";
+    private static final String MEMBER_COUNT_SQL = "SELECT COUNT(*) FROM group_member WHERE group_id = ?";
+    private static final String MEMBER_IDS_SQL = "SELECT user_id FROM group_member WHERE group_id = ? AND user_id > ? "
+            + "ORDER BY user_id LIMIT ?";
+
     @Autowired
     private GroupRepository groupRepository;
 
     @Autowired
     private GroupMemberRepository groupMemberRepository;
 
-    public Group createGroup(String name, String description, Long creatorId) {
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private GroupMembershipIndex groupMembershipIndex;
+
+    @Autowired
+    private GroupSummaryRepository groupSummaryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public GroupListItem createGroup(String name, String description, Long creatorId) {
         Group group = new Group();
         group.setName(name);
         group.setDescription(description);
@@ -37,54 +82,146 @@ public class GroupService {
         member.setJoinDate(LocalDateTime.now());
 
         groupMemberRepository.save(member);
-
-        return group;
+        groupMembershipIndex.addAfterCommit(group.getId(), Collections.singletonList(creatorId));
+
+        GroupSummary summary = new GroupSummary();
+        summary.setGroupId(group.getId());
+        summary.setName(name);
+        summary.setDescription(description);
+        summary.setMemberCount(1);
+        summary.setLastActivityTime(member.getJoinDate());
+        summary.setCreateTime(member.getJoinDate());
+        groupSummaryRepository.save(summary);
+
+        return new GroupListItem(group.getId(), name, description, 1, member.getJoinDate());
     }
 
-    public Group joinGroup(Long userId, Long groupId) {
-        Group group = groupRepository.findById(groupId).orElseThrow(() -> new RuntimeException("Group not found"));
-        User user = new User(); // 这里需要从数据库获取真实的用户
-        user.setId(userId);
-
-        GroupMember existingMember = groupMemberRepository.findByUserIdAndGroupId(userId, groupId);
-        if (existingMember != null) {
+    public void joinGroup(Long userId, Long groupId) {
+        getGroupById(groupId);
+        if (jdbcTemplate.update(JOIN_SQL, userId, groupId, Timestamp.valueOf(LocalDateTime.now())) == 0) {
             throw new RuntimeException("User is already a member of this group");
         }
+        groupMembershipIndex.addAfterCommit(groupId, Collections.singletonList(userId));
+        groupSummaryRepository.addMembers(groupId, 1, LocalDateTime.now());
+        entityCacheService.evictGroup(groupId);
+        notificationService.notifyAfterCommit(NotificationType.GROUP_JOIN, userId, groupId);
+    }
 
-        GroupMember member = new GroupMember();
-        member.setUser(user);
-        member.setGroup(group);
-        member.setJoinDate(LocalDateTime.now());
-
-        groupMemberRepository.save(member);
+    // 大群批量拉人：分批插入，已经是成员的跳过，返回实际新加入的人数
+    public int joinGroupBulk(Long groupId, Collection<Long> userIds) {
+        getGroupById(groupId);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> pending = new ArrayList<>(new LinkedHashSet<>(userIds));
+        List<Long> joined = new ArrayList<>();
+        for (int from = 0; from < pending.size(); from += BULK_BATCH_SIZE) {
+            List<Long> chunk = pending.subList(from, Math.min(from + BULK_BATCH_SIZE, pending.size()));
+            List<Object[]> rows = new ArrayList<>(chunk.size());
+            for (Long userId : chunk) {
+                rows.add(new Object[]{userId, groupId, now});
+            }
+            int[] inserted = jdbcTemplate.batchUpdate(JOIN_SQL, rows);
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i] != 0) {
+                    joined.add(chunk.get(i));
+                }
+            }
+        }
+        groupMembershipIndex.addAfterCommit(groupId, joined);
+        if (!joined.isEmpty()) {
+            groupSummaryRepository.addMembers(groupId, joined.size(), LocalDateTime.now());
+        }
+        entityCacheService.evictGroup(groupId);
+        return joined.size();
+    }
 
-        return group;
+    public void leaveGroup(Long userId, Long groupId) {
+        getGroupById(groupId);
+        if (jdbcTemplate.update(LEAVE_SQL, userId, groupId) == 0) {
+            throw new RuntimeException("User is not a member of this group");
+        }
+        groupMembershipIndex.removeAfterCommit(groupId, userId);
+        groupSummaryRepository.removeMember(groupId);
+        entityCacheService.evictGroup(groupId);
     }
 
-    public Group leaveGroup(Long userId, Long groupId) {
-        Group group = groupRepository.findById(groupId).orElseThrow(() -> new RuntimeException("Group not found"));
-        User user = new User(); // 这里需要从数据库获取真实的用户
-        user.setId(userId);
+    // 按最近活跃时间倒序分页，只查读模型表
+    public CursorPage<GroupListItem> listGroups(String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        ActivityCursor after = ActivityCursor.decode(cursor);
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<GroupListItem> items = after == null
+                ? groupSummaryRepository.findFirstPageByActivity(page)
+                : groupSummaryRepository.findPageByActivityAfter(after.getTime(), after.getId(), page);
+        String nextCursor = null;
+        if (items.size() > size) {
+            items = items.subList(0, size);
+            GroupListItem last = items.get(size - 1);
+            nextCursor = ActivityCursor.encode(last.getLastActivityTime(), last.getId());
+        }
+        return new CursorPage<>(items, nextCursor);
+    }
 
-        GroupMember member = groupMemberRepository.findByUserIdAndGroupId(userId, groupId);
-        if (member == null) {
-            throw new RuntimeException("User is not a member of this group");
+    public GroupListItem getGroupSummary(Long groupId) {
+        List<GroupListItem> items = groupSummaryRepository.findItemByGroupId(groupId);
+        if (items.isEmpty()) {
+            throw new RuntimeException("Group not found");
         }
+        return items.get(0);
+    }
 
-        groupMemberRepository.delete(member);
+    // 启动时为还没有读模型的群组补一行
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSummaries() {
+        int inserted = groupSummaryRepository.backfill(LocalDateTime.now());
+        if (inserted > 0) {
+            log.info("Backfilled {} group summaries", inserted);
+        }
+    }
 
+    public Group getGroupById(Long groupId) {
+        Group group = entityCacheService.getGroup(groupId, () -> groupRepository.findById(groupId).orElse(null));
+        if (group == null) {
+            throw new RuntimeException("Group not found");
+        }
         return group;
     }
 
-    public List<Group> getAllGroups() {
-        return groupRepository.findAll();
+    public List<GroupListItem> getGroupsByUser(Long userId) {
+        List<Long> groupIds;
+        if (groupMembershipIndex.isReady()) {
+            groupIds = groupMembershipIndex.groupIds(userId);
+        } else {
+            groupIds = new ArrayList<>();
+            for (Group group : groupRepository.findGroupsByUserId(userId)) {
+                groupIds.add(group.getId());
+            }
+        }
+        if (groupIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return groupSummaryRepository.findItemsByGroupIdIn(groupIds);
     }
 
-    public Group getGroupById(Long groupId) {
-        return groupRepository.findById(groupId).orElseThrow(() -> new RuntimeException("Group not found"));
+    public boolean isMember(Long groupId, Long userId) {
+        if (!groupMembershipIndex.isReady()) {
+            Integer count = jdbcTemplate.queryForObject(IS_MEMBER_SQL, Integer.class, groupId, userId);
+            return count != null && count > 0;
+        }
+        return groupMembershipIndex.isMember(groupId, userId);
     }
 
-    public List<Group> getGroupsByUser(Long userId) {
-        return groupRepository.findGroupsByUserId(userId);
+    public int getMemberCount(Long groupId) {
+        if (!groupMembershipIndex.isReady()) {
+            Integer count = jdbcTemplate.queryForObject(MEMBER_COUNT_SQL, Integer.class, groupId);
+            return count == null ? 0 : count;
+        }
+        return groupMembershipIndex.memberCount(groupId);
+    }
+
+    public List<Long> getMemberIds(Long groupId, long after, int limit) {
+        if (!groupMembershipIndex.isReady()) {
+            return jdbcTemplate.queryForList(MEMBER_IDS_SQL, Long.class, groupId, after, limit);
+        }
+        return groupMembershipIndex.members(groupId, after, limit);
     }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.klpbbs.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// 群组列表的读模型：名称、成员数和最近活跃时间冗余在一行里，列表查询不需要关联成员表
+@Entity
+@Table(name = "group_summary", indexes = @Index(columnList = "last_activity_time, group_id"))
+public class GroupSummary {
+
+    @Id
+    @Column(name = "group_id")
+    private Long groupId;
+
+    @Column(length = 100)
+    private String name;
+
+    @Column(length = 500)
+    private String description;
+
+    @Column(name = "member_count", nullable = false)
+    private Integer memberCount;
+
+    @Column(name = "last_activity_time", nullable = false)
+    private LocalDateTime lastActivityTime;
+
+    private LocalDateTime createTime;
+
+    public Long getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(Long groupId) {
+        this.groupId = groupId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Integer getMemberCount() {
+        return memberCount;
+    }
+
+    public void setMemberCount(Integer memberCount) {
+        this.memberCount = memberCount;
+    }
+
+    public LocalDateTime getLastActivityTime() {
+        return lastActivityTime;
+    }
+
+    public void setLastActivityTime(LocalDateTime lastActivityTime) {
+        this.lastActivityTime = lastActivityTime;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+}
@@ -0,0 +1,56 @@
+package com.klpbbs.repository;
+
+import com.klpbbs.entity.GroupSummary;
+import com.klpbbs.service.GroupListItem;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface GroupSummaryRepository extends JpaRepository<GroupSummary, Long> {
+
+    @Query("SELECT new com.klpbbs.service.GroupListItem(s.groupId, s.name, s.description, s.memberCount, s.lastActivityTime) "
+            + "FROM GroupSummary s ORDER BY s.lastActivityTime DESC, s.groupId DESC")
+    List<GroupListItem> findFirstPageByActivity(Pageable pageable);
+
+    // 按 (最近活跃时间, id) 做 keyset 分页，从上一页最后一行之后继续
+    @Query("SELECT new com.klpbbs.service.GroupListItem(s.groupId, s.name, s.description, s.memberCount, s.lastActivityTime) "
+            + "FROM GroupSummary s WHERE s.lastActivityTime < :activityTime "
+            + "OR (s.lastActivityTime = :activityTime AND s.groupId < :groupId) "
+            + "ORDER BY s.lastActivityTime DESC, s.groupId DESC")
+    List<GroupListItem> findPageByActivityAfter(@Param("activityTime") LocalDateTime activityTime, @Param("groupId") Long groupId,
+                                                Pageable pageable);
+
+    @Query("SELECT new com.klpbbs.service.GroupListItem(s.groupId, s.name, s.description, s.memberCount, s.lastActivityTime) "
+            + "FROM GroupSummary s WHERE s.groupId IN :groupIds ORDER BY s.lastActivityTime DESC, s.groupId DESC")
+    List<GroupListItem> findItemsByGroupIdIn(@Param("groupIds") Collection<Long> groupIds);
+
+    @Query("SELECT new com.klpbbs.service.GroupListItem(s.groupId, s.name, s.description, s.memberCount, s.lastActivityTime) "
+            + "FROM GroupSummary s WHERE s.groupId = :groupId")
+    List<GroupListItem> findItemByGroupId(@Param("groupId") Long groupId);
+
+    @Modifying
+    @Query(value = "UPDATE group_summary SET member_count = GREATEST(member_count + :delta, 0), last_activity_time = :now "
+            + "WHERE group_id = :groupId", nativeQuery = true)
+    int addMembers(@Param("groupId") Long groupId, @Param("delta") int delta, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "UPDATE group_summary SET member_count = GREATEST(member_count - 1, 0) WHERE group_id = :groupId",
+            nativeQuery = true)
+    int removeMember(@Param("groupId") Long groupId);
+
+    // 补齐还没有读模型的群组；Group 实体用默认表名，group 是保留字需要加引号
+    @Modifying
+    @Query(value = "INSERT INTO group_summary (group_id, name, description, member_count, last_activity_time, create_time) "
+            + "SELECT g.id, g.name, g.description, (SELECT COUNT(*) FROM group_member m WHERE m.group_id = g.id), "
+            + ":now, :now FROM `group` g WHERE NOT EXISTS (SELECT 1 FROM group_summary s WHERE s.group_id = g.id)",
+            nativeQuery = true)
+    int backfill(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,34 @@
+package com.klpbbs.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// 对外不透明的游标，内容是上一页最后一条记录的 id
+public final class IdCursor {
+
+    private static final String PREFIX = "id:";
+
+    private IdCursor() {
+    }
+
+    public static String encode(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 为空时返回 null，表示从头开始
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) {
+                throw new RuntimeException("Invalid cursor");
+            }
+            return Long.parseLong(value.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+}
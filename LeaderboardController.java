@@ -0,0 +1,52 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.service.LeaderboardKey;
+import com.klpbbs.service.LeaderboardService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/leaderboards")
+public class LeaderboardController {
+
+    // 公开的榜单；登录时间、更新时间等涉及用户行为的榜单只在管理后台提供
+    private static final Set<LeaderboardKey> PUBLIC_KEYS = EnumSet.of(LeaderboardKey.LEVEL_POINTS_REPUTATION,
+            LeaderboardKey.ACTIVITY, LeaderboardKey.SOCIAL_INFLUENCE, LeaderboardKey.REGISTRATION_TIME);
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @GetMapping("/{key}")
+    public ResponseEntity<?> getTop(@PathVariable LeaderboardKey key,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "50") int limit) {
+        if (!PUBLIC_KEYS.contains(key)) {
+            return ResponseEntity.notFound().build();
+        }
+        List<Long> userIds = leaderboardService.top(key, offset, Math.min(limit, 1000));
+        return ResponseEntity.ok(userIds);
+    }
+
+    @GetMapping("/{key}/users/{userId}")
+    public ResponseEntity<?> getRank(@PathVariable LeaderboardKey key, @PathVariable Long userId,
+            @RequestParam(defaultValue = "5") int radius) {
+        if (!PUBLIC_KEYS.contains(key)) {
+            return ResponseEntity.notFound().build();
+        }
+        Integer rank = leaderboardService.rankOf(key, userId);
+        if (rank == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("rank", rank);
+        result.put("around", leaderboardService.around(key, userId, Math.min(radius, 50)));
+        return ResponseEntity.ok(result);
+    }
+}
@@ -0,0 +1,56 @@
+package com.klpbbs.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// 排行榜排序键，分数按数组顺序依次比较，越大越靠前
+public enum LeaderboardKey {
+    LEVEL_POINTS_REPUTATION {
+        @Override
+        long[] score(Object[] row) {
+            return new long[]{number(row[1]), number(row[2]), number(row[3])};
+        }
+    },
+    ACTIVITY {
+        @Override
+        long[] score(Object[] row) {
+            return new long[]{number(row[4]), number(row[5]), number(row[6])};
+        }
+    },
+    SOCIAL_INFLUENCE {
+        @Override
+        long[] score(Object[] row) {
+            // 关注数少的排前面
+            return new long[]{number(row[7]), -number(row[8])};
+        }
+    },
+    REGISTRATION_TIME {
+        @Override
+        long[] score(Object[] row) {
+            return new long[]{epochSecond(row[9])};
+        }
+    },
+    LAST_LOGIN_TIME {
+        @Override
+        long[] score(Object[] row) {
+            return new long[]{epochSecond(row[10])};
+        }
+    },
+    UPDATE_TIME {
+        @Override
+        long[] score(Object[] row) {
+            return new long[]{epochSecond(row[11])};
+        }
+    };
+
+    // row 的列顺序见 UserRepository.findRankingFieldsAfter
+    abstract long[] score(Object[] row);
+
+    private static long number(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    private static long epochSecond(Object value) {
+        return value == null ? Long.MIN_VALUE : ((LocalDateTime) value).toEpochSecond(ZoneOffset.UTC);
+    }
+}
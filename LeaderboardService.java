@@ -0,0 +1,221 @@
+package com.klpbbs.service;
+
+import com.klpbbs.repository.UserRepository;
+import com.klpbbs.support.AfterCommit;
+import com.klpbbs.support.RankedSkipList;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 用户排行榜，每个排序键一张跳表，随积分、等级、粉丝数等变化增量更新
+@Service
+public class LeaderboardService {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardService.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${klpbbs.leaderboard.warm-page-size:5000}")
+    private int warmPageSize;
+
+    @Value("${klpbbs.leaderboard.sync-interval-ms:60000}")
+    private long syncIntervalMs;
+
+    private final Map<LeaderboardKey, Board> boards = new EnumMap<>(LeaderboardKey.class);
+
+    private volatile boolean ready;
+    private volatile LocalDateTime lastSync;
+    private ScheduledExecutorService scheduler;
+
+    public LeaderboardService() {
+        for (LeaderboardKey key : LeaderboardKey.values()) {
+            boards.put(key, new Board());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "leaderboard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::warm);
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<Long> top(LeaderboardKey key, int offset, int limit) {
+        return boards.get(key).range(offset, limit);
+    }
+
+    // 从 1 开始的名次，不在榜上返回 null
+    public Integer rankOf(LeaderboardKey key, Long userId) {
+        int rank = boards.get(key).rank(userId);
+        return rank < 0 ? null : rank + 1;
+    }
+
+    public List<Long> around(LeaderboardKey key, Long userId, int radius) {
+        Board board = boards.get(key);
+        int rank = board.rank(userId);
+        if (rank < 0) {
+            return Collections.emptyList();
+        }
+        return board.range(Math.max(0, rank - radius), 2 * radius + 1);
+    }
+
+    // 在事务提交后重新读取用户的排行字段
+    public void refreshAfterCommit(Long userId) {
+        AfterCommit.run(() -> {
+            List<Object[]> rows = userRepository.findRankingFieldsById(userId);
+            if (rows.isEmpty()) {
+                remove(userId);
+            } else {
+                update(rows.get(0));
+            }
+        });
+    }
+
+    public void remove(Long userId) {
+        for (Board board : boards.values()) {
+            board.remove(userId);
+        }
+    }
+
+    private void update(Object[] row) {
+        Long userId = (Long) row[0];
+        for (Map.Entry<LeaderboardKey, Board> entry : boards.entrySet()) {
+            entry.getValue().put(userId, entry.getKey().score(row));
+        }
+    }
+
+    private void warm() {
+        try {
+            lastSync = LocalDateTime.now();
+            long lastId = 0;
+            List<Object[]> rows;
+            do {
+                rows = userRepository.findRankingFieldsAfter(lastId, PageRequest.of(0, warmPageSize));
+                for (Object[] row : rows) {
+                    lastId = (Long) row[0];
+                    for (Map.Entry<LeaderboardKey, Board> entry : boards.entrySet()) {
+                        entry.getValue().putIfAbsent(lastId, entry.getKey().score(row));
+                    }
+                }
+            } while (rows.size() == warmPageSize);
+            ready = true;
+            log.info("Leaderboards warmed with {} users", boards.get(LeaderboardKey.UPDATE_TIME).size());
+        } catch (RuntimeException e) {
+            log.error("Failed to warm leaderboards", e);
+        }
+    }
+
+    // 兜底同步没有调用 refreshAfterCommit 的改动
+    private void syncQuietly() {
+        if (!ready) {
+            return;
+        }
+        try {
+            LocalDateTime since = lastSync.minusSeconds(5);
+            lastSync = LocalDateTime.now();
+            userRepository.findRankingFieldsUpdatedAfter(since).forEach(this::update);
+        } catch (RuntimeException e) {
+            log.warn("Failed to sync leaderboards", e);
+        }
+    }
+
+    private static final class Board {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final RankedSkipList list = new RankedSkipList();
+        private final Map<Long, long[]> scores = new HashMap<>();
+
+        void put(long userId, long[] score) {
+            lock.writeLock().lock();
+            try {
+                long[] previous = scores.put(userId, score);
+                if (previous != null) {
+                    list.remove(userId, previous);
+                }
+                list.insert(userId, score);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void putIfAbsent(long userId, long[] score) {
+            lock.writeLock().lock();
+            try {
+                if (scores.putIfAbsent(userId, score) == null) {
+                    list.insert(userId, score);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long userId) {
+            lock.writeLock().lock();
+            try {
+                long[] previous = scores.remove(userId);
+                if (previous != null) {
+                    list.remove(userId, previous);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int rank(long userId) {
+            lock.readLock().lock();
+            try {
+                long[] score = scores.get(userId);
+                return score == null ? -1 : list.rank(userId, score);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        List<Long> range(int offset, int limit) {
+            lock.readLock().lock();
+            try {
+                return list.range(offset, limit);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return list.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
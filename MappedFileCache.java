@@ -0,0 +1,61 @@
+package com.klpbbs.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 热点小文件（头像、封面）的只读内存映射，按总字节数做 LRU；内容寻址的文件不会被改写，无需失效
+public final class MappedFileCache {
+
+    private final long maxFileBytes;
+    private final long maxTotalBytes;
+    private final LinkedHashMap<Path, MappedByteBuffer> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    public MappedFileCache(long maxFileBytes, long maxTotalBytes) {
+        this.maxFileBytes = maxFileBytes;
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    public boolean accepts(long size) {
+        return size <= maxFileBytes;
+    }
+
+    // 返回独立的只读视图，调用方可以随意修改 position/limit
+    public ByteBuffer get(Path path) throws IOException {
+        synchronized (this) {
+            MappedByteBuffer mapped = entries.get(path);
+            if (mapped != null) {
+                return mapped.asReadOnlyBuffer();
+            }
+        }
+
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        synchronized (this) {
+            MappedByteBuffer existing = entries.putIfAbsent(path, mapped);
+            if (existing != null) {
+                return existing.asReadOnlyBuffer();
+            }
+            totalBytes += mapped.capacity();
+            Iterator<Map.Entry<Path, MappedByteBuffer>> iterator = entries.entrySet().iterator();
+            while (totalBytes > maxTotalBytes && iterator.hasNext()) {
+                Map.Entry<Path, MappedByteBuffer> eldest = iterator.next();
+                if (eldest.getKey().equals(path)) {
+                    continue;
+                }
+                totalBytes -= eldest.getValue().capacity();
+                iterator.remove();
+            }
+            return mapped.asReadOnlyBuffer();
+        }
+    }
+}
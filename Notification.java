@@ -0,0 +1,124 @@
+package com.klpbbs.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// 同一接收者、同一类型、同一目标的未读通知合并成一行，actorCount 记录涉及多少个不同的人；
+// collapseKey 只在未读时有值，已读后清空，之后的同类事件会新建一行
+@Entity
+@Table(name = "notification",
+        uniqueConstraints = @UniqueConstraint(columnNames = "collapse_key"),
+        indexes = @Index(columnList = "recipient_id, id"))
+public class Notification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "recipient_id", nullable = false)
+    private Long recipientId;
+
+    @Column(length = 20, nullable = false)
+    private String type;
+
+    @Column(name = "target_id", nullable = false)
+    private Long targetId;
+
+    // 最近一次触发的用户
+    @Column(name = "actor_id")
+    private Long actorId;
+
+    @Column(name = "actor_count", nullable = false)
+    private Integer actorCount;
+
+    @Column(name = "collapse_key", length = 100)
+    private String collapseKey;
+
+    @Column(name = "is_read", nullable = false)
+    private Boolean read;
+
+    private LocalDateTime createTime;
+
+    private LocalDateTime updateTime;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getRecipientId() {
+        return recipientId;
+    }
+
+    public void setRecipientId(Long recipientId) {
+        this.recipientId = recipientId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getTargetId() {
+        return targetId;
+    }
+
+    public void setTargetId(Long targetId) {
+        this.targetId = targetId;
+    }
+
+    public Long getActorId() {
+        return actorId;
+    }
+
+    public void setActorId(Long actorId) {
+        this.actorId = actorId;
+    }
+
+    public Integer getActorCount() {
+        return actorCount;
+    }
+
+    public void setActorCount(Integer actorCount) {
+        this.actorCount = actorCount;
+    }
+
+    public String getCollapseKey() {
+        return collapseKey;
+    }
+
+    public void setCollapseKey(String collapseKey) {
+        this.collapseKey = collapseKey;
+    }
+
+    public Boolean getRead() {
+        return read;
+    }
+
+    public void setRead(Boolean read) {
+        this.read = read;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+
+    public LocalDateTime getUpdateTime() {
+        return updateTime;
+    }
+
+    public void setUpdateTime(LocalDateTime updateTime) {
+        this.updateTime = updateTime;
+    }
+}
@@ -0,0 +1,44 @@
+package com.klpbbs.entity;
+
+import jakarta.persistence.*;
+
+// 合并进某条通知的用户，每条通知每人一行，用来让 actorCount 只统计不同的人
+@Entity
+@Table(name = "notification_actor",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"notification_id", "actor_id"}))
+public class NotificationActor {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "notification_id", nullable = false)
+    private Long notificationId;
+
+    @Column(name = "actor_id", nullable = false)
+    private Long actorId;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getNotificationId() {
+        return notificationId;
+    }
+
+    public void setNotificationId(Long notificationId) {
+        this.notificationId = notificationId;
+    }
+
+    public Long getActorId() {
+        return actorId;
+    }
+
+    public void setActorId(Long actorId) {
+        this.actorId = actorId;
+    }
+}
@@ -0,0 +1,61 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.entity.Notification;
+import com.klpbbs.service.AuthService;
+import com.klpbbs.service.NotificationService;
+import com.klpbbs.support.CursorPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/notifications")
+public class NotificationController {
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private AuthService authService;
+
+    @GetMapping
+    public ResponseEntity<?> getNotifications(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(defaultValue = "20") int limit) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        CursorPage<Notification> page = notificationService.list(userId, cursor, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/unread-count")
+    public ResponseEntity<?> getUnreadCount(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(notificationService.unreadCount(userId));
+    }
+
+    @PostMapping("/{id}/read")
+    public ResponseEntity<?> markRead(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization, @PathVariable Long id) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(notificationService.markRead(userId, id));
+    }
+
+    @PostMapping("/read-all")
+    public ResponseEntity<?> markAllRead(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(notificationService.markAllRead(userId));
+    }
+}
@@ -0,0 +1,19 @@
+package com.klpbbs.repository;
+
+import com.klpbbs.entity.Notification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+
+    List<Notification> findByRecipientIdAndIdLessThanOrderByIdDesc(Long recipientId, Long id, Pageable pageable);
+
+    @Query("SELECT COUNT(n.id) FROM Notification n WHERE n.recipientId = :recipientId AND n.read = false")
+    long countUnread(@Param("recipientId") Long recipientId);
+}
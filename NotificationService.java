@@ -0,0 +1,388 @@
+package com.klpbbs.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.klpbbs.entity.Notification;
+import com.klpbbs.repository.NotificationRepository;
+import com.klpbbs.repository.PostRepository;
+import com.klpbbs.support.AfterCommit;
+import com.klpbbs.support.CursorPage;
+import com.klpbbs.support.IdCursor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 通知管道：调用方只把意图放进内存队列，接收者解析、合并同类事件和批量写库都在后台线程里完成
+// 通知是尽力而为的，队列满或写库失败时丢弃并记录日志，不影响发帖、点赞等主流程
+@Service
+public class NotificationService implements SocialGraphListener {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // 没有未读的同类通知时插入一行空通知，再把这批的用户记进 notification_actor，只按新出现的人增加 actor_count；
+    // 只有后台线程会写这几条语句
+    private static final String INSERT_SQL = "INSERT IGNORE INTO notification (recipient_id, type, target_id, actor_id, actor_count, "
+            + "collapse_key, is_read, create_time, update_time) VALUES (?, ?, ?, NULL, 0, ?, false, ?, ?)";
+    private static final String IDS_BY_KEY_SQL = "SELECT id, collapse_key FROM notification WHERE collapse_key IN (:keys)";
+    private static final String ACTOR_SQL = "INSERT IGNORE INTO notification_actor (notification_id, actor_id) VALUES (?, ?)";
+    private static final String COLLAPSE_SQL = "UPDATE notification SET actor_count = actor_count + ?, actor_id = ?, "
+            + "update_time = ? WHERE id = ?";
+    // 已读的通知不再合并，去掉它们的用户记录
+    private static final String CLEAR_ACTORS_SQL = "DELETE FROM notification_actor WHERE notification_id = ?";
+    private static final String CLEAR_ALL_ACTORS_SQL = "DELETE FROM notification_actor WHERE notification_id IN "
+            + "(SELECT id FROM notification WHERE recipient_id = ? AND is_read = false)";
+    private static final String MARK_READ_SQL = "UPDATE notification SET is_read = true, collapse_key = NULL "
+            + "WHERE id = ? AND recipient_id = ? AND is_read = false";
+    private static final String MARK_ALL_READ_SQL = "UPDATE notification SET is_read = true, collapse_key = NULL "
+            + "WHERE recipient_id = ? AND is_read = false";
+    // 没有群主的概念，通知最早加入的成员（即创建者）
+    private static final String GROUP_OWNER_SQL = "SELECT user_id FROM group_member WHERE group_id = ? ORDER BY id LIMIT 1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Value("${klpbbs.notification.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${klpbbs.notification.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${klpbbs.notification.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${klpbbs.notification.max-cached-users:200000}")
+    private long maxCachedUsers;
+
+    @Value("${klpbbs.notification.unread-ttl-seconds:30}")
+    private long unreadTtlSeconds;
+
+    private BlockingQueue<Intent> queue;
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // 用户 id -> 未读数，从库里加载后按写入和标记已读增减；加载与写入交错会有少量偏差，靠定期重新加载纠正
+    private Cache<Long, AtomicInteger> unread;
+    // 帖子 id -> 作者用户 id，点赞通知量大，避免每次查库
+    private Cache<Long, Long> postAuthors;
+
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        unread = Caffeine.newBuilder()
+                .maximumSize(maxCachedUsers)
+                .expireAfterWrite(Duration.ofSeconds(unreadTtlSeconds))
+                .build();
+        postAuthors = Caffeine.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "notification");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(flushIntervalMs * 5, TimeUnit.MILLISECONDS);
+        flushQuietly();
+    }
+
+    // 按类型解析接收者，在当前事务提交后入队
+    public void notifyAfterCommit(NotificationType type, Long actorId, Long targetId) {
+        AfterCommit.run(() -> enqueue(new Intent(type, actorId, targetId, null)));
+    }
+
+    // 除了按类型解析出的接收者，再额外通知这些人，例如回复评论时通知被回复的人；同一个人只通知一次
+    public void notifyAfterCommit(NotificationType type, Long actorId, Long targetId, Collection<Long> alsoNotify) {
+        List<Long> recipients = new ArrayList<>(alsoNotify);
+        AfterCommit.run(() -> enqueue(new Intent(type, actorId, targetId, recipients)));
+    }
+
+    @Override
+    public void onFollow(long followerId, long followingId) {
+        enqueue(new Intent(NotificationType.FOLLOW, followerId, followingId, null));
+    }
+
+    @Override
+    public void onUnfollow(long followerId, long followingId) {
+    }
+
+    public CursorPage<Notification> list(Long userId, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Long lastId = IdCursor.decode(cursor);
+        List<Notification> notifications = notificationRepository.findByRecipientIdAndIdLessThanOrderByIdDesc(userId,
+                lastId == null ? Long.MAX_VALUE : lastId, PageRequest.of(0, size + 1));
+        String nextCursor = null;
+        if (notifications.size() > size) {
+            notifications = notifications.subList(0, size);
+            nextCursor = IdCursor.encode(notifications.get(size - 1).getId());
+        }
+        return new CursorPage<>(notifications, nextCursor);
+    }
+
+    public int unreadCount(Long userId) {
+        return Math.max(0, unread.get(userId, id -> new AtomicInteger((int) notificationRepository.countUnread(id))).get());
+    }
+
+    // 返回 false 表示通知不存在、不属于该用户或者已读
+    public boolean markRead(Long userId, Long notificationId) {
+        if (jdbcTemplate.update(MARK_READ_SQL, notificationId, userId) == 0) {
+            return false;
+        }
+        jdbcTemplate.update(CLEAR_ACTORS_SQL, notificationId);
+        adjustUnread(userId, -1);
+        return true;
+    }
+
+    public int markAllRead(Long userId) {
+        jdbcTemplate.update(CLEAR_ALL_ACTORS_SQL, userId);
+        int updated = jdbcTemplate.update(MARK_ALL_READ_SQL, userId);
+        adjustUnread(userId, -updated);
+        return updated;
+    }
+
+    public void flush() {
+        flushQueued.set(false);
+        while (true) {
+            List<Intent> intents = new ArrayList<>(batchSize);
+            queue.drainTo(intents, batchSize);
+            if (intents.isEmpty()) {
+                break;
+            }
+            write(collapse(intents));
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            log.warn("{} notifications were dropped because the queue was full", lost);
+        }
+    }
+
+    private void enqueue(Intent intent) {
+        if (!queue.offer(intent)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (queue.size() >= batchSize && flushQueued.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    // 解析接收者并把同一批里接收者、类型、目标都相同的意图合并成一条
+    private Collection<Pending> collapse(List<Intent> intents) {
+        Map<String, Pending> pending = new LinkedHashMap<>();
+        for (Intent intent : intents) {
+            // 每条通知都要有触发的人，actor_count 按不同的人计
+            if (intent.actorId == null) {
+                continue;
+            }
+            for (Long recipientId : recipients(intent)) {
+                if (recipientId == null || recipientId.equals(intent.actorId)) {
+                    continue;
+                }
+                String key = intent.type.name() + ":" + intent.targetId + ":" + recipientId;
+                Pending entry = pending.computeIfAbsent(key, k -> new Pending(k, recipientId, intent.type, intent.targetId));
+                entry.actorIds.remove(intent.actorId);
+                entry.actorIds.add(intent.actorId);
+            }
+        }
+        return pending.values();
+    }
+
+    private Set<Long> recipients(Intent intent) {
+        Set<Long> recipients = new LinkedHashSet<>(resolveRecipients(intent));
+        if (intent.alsoNotify != null) {
+            recipients.addAll(intent.alsoNotify);
+        }
+        return recipients;
+    }
+
+    private List<Long> resolveRecipients(Intent intent) {
+        switch (intent.type) {
+            case REPLY:
+            case LIKE:
+                Long authorId = postAuthors.get(intent.targetId, id -> postRepository.findAuthorIdById(id).orElse(null));
+                return authorId == null ? Collections.emptyList() : Collections.singletonList(authorId);
+            case FOLLOW:
+                return Collections.singletonList(intent.targetId);
+            case GROUP_JOIN:
+                return jdbcTemplate.queryForList(GROUP_OWNER_SQL, Long.class, intent.targetId);
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    private void write(Collection<Pending> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Pending> inserted = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                List<Pending> entries = new ArrayList<>(pending);
+                List<Object[]> rows = new ArrayList<>(entries.size());
+                List<String> keys = new ArrayList<>(entries.size());
+                for (Pending entry : entries) {
+                    rows.add(new Object[]{entry.recipientId, entry.type.name(), entry.targetId, entry.key, now, now});
+                    keys.add(entry.key);
+                }
+                int[] created = jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                for (int i = 0; i < entries.size(); i++) {
+                    if (created[i] != 0) {
+                        inserted.add(entries.get(i));
+                    }
+                }
+
+                Map<String, Long> ids = new HashMap<>();
+                namedParameterJdbcTemplate.query(IDS_BY_KEY_SQL, Collections.singletonMap("keys", keys), rs -> {
+                    ids.put(rs.getString(2), rs.getLong(1));
+                });
+                List<Object[]> actors = new ArrayList<>();
+                List<Pending> actorEntries = new ArrayList<>();
+                for (Pending entry : entries) {
+                    // 插入后到这里之间被标记已读的，这批就不再合并进去
+                    Long notificationId = ids.get(entry.key);
+                    if (notificationId == null) {
+                        continue;
+                    }
+                    for (Long actorId : entry.actorIds) {
+                        actors.add(new Object[]{notificationId, actorId});
+                        actorEntries.add(entry);
+                    }
+                }
+                int[] added = jdbcTemplate.batchUpdate(ACTOR_SQL, actors);
+                Map<Pending, Integer> newActors = new HashMap<>();
+                for (int i = 0; i < added.length; i++) {
+                    if (added[i] != 0) {
+                        newActors.merge(actorEntries.get(i), 1, Integer::sum);
+                    }
+                }
+
+                // 这批里都是已经记过的人时不改动通知，例如取消关注后再次关注
+                List<Object[]> updates = new ArrayList<>(newActors.size());
+                newActors.forEach((entry, count) -> updates.add(new Object[]{count, entry.lastActorId(), now, ids.get(entry.key)}));
+                if (!updates.isEmpty()) {
+                    jdbcTemplate.batchUpdate(COLLAPSE_SQL, updates);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} notifications, dropping them", pending.size(), e);
+            return;
+        }
+        // 只有新插入的行会增加未读数，合并到已有未读行上的不变
+        for (Pending entry : inserted) {
+            adjustUnread(entry.recipientId, 1);
+        }
+    }
+
+    // 只改缓存里的计数，不算作写入，不会推迟到期重新加载；没有缓存的用户下次读取时从库里算
+    private void adjustUnread(Long userId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        AtomicInteger count = unread.getIfPresent(userId);
+        if (count != null) {
+            count.addAndGet(delta);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush notifications", e);
+        }
+    }
+
+    private static final class Intent {
+        final NotificationType type;
+        final Long actorId;
+        final Long targetId;
+        final List<Long> alsoNotify;
+
+        Intent(NotificationType type, Long actorId, Long targetId, List<Long> alsoNotify) {
+            this.type = type;
+            this.actorId = actorId;
+            this.targetId = targetId;
+            this.alsoNotify = alsoNotify;
+        }
+    }
+
+    private static final class Pending {
+        final String key;
+        final Long recipientId;
+        final NotificationType type;
+        final Long targetId;
+        // 按最近一次出现的顺序排列
+        final Set<Long> actorIds = new LinkedHashSet<>();
+
+        Pending(String key, Long recipientId, NotificationType type, Long targetId) {
+            this.key = key;
+            this.recipientId = recipientId;
+            this.type = type;
+            this.targetId = targetId;
+        }
+
+        Long lastActorId() {
+            Long last = null;
+            for (Long actorId : actorIds) {
+                last = actorId;
+            }
+            return last;
+        }
+    }
+}
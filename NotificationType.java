@@ -0,0 +1,9 @@
+package com.klpbbs.service;
+
+// targetId 的含义：REPLY、LIKE 为帖子 id，FOLLOW 为被关注的用户 id，GROUP_JOIN 为群组 id
+public enum NotificationType {
+    REPLY,
+    LIKE,
+    FOLLOW,
+    GROUP_JOIN
+}
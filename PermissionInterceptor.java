@@ -0,0 +1,63 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.service.AuthService;
+import com.klpbbs.service.AuthorizationService;
+import com.klpbbs.service.PermissionRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 检查 @RequiresPermission：未登录返回 401，没有权限返回 403
+@Component
+public class PermissionInterceptor implements HandlerInterceptor {
+
+    // 每个处理方法需要的权限位只解析一次，没有注解的记为 -1
+    private final Map<HandlerMethod, Integer> requiredBits = new ConcurrentHashMap<>();
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private AuthorizationService authorizationService;
+
+    @Autowired
+    private PermissionRegistry permissionRegistry;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        int bit = requiredBits.computeIfAbsent((HandlerMethod) handler, this::resolve);
+        if (bit < 0) {
+            return true;
+        }
+        Long userId = authService.authenticate(BearerTokens.of(request.getHeader(HttpHeaders.AUTHORIZATION)));
+        if (userId == null) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            return false;
+        }
+        if (!authorizationService.isAllowed(userId, bit)) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return false;
+        }
+        return true;
+    }
+
+    private int resolve(HandlerMethod method) {
+        RequiresPermission required = AnnotatedElementUtils.findMergedAnnotation(method.getMethod(), RequiresPermission.class);
+        if (required == null) {
+            required = AnnotatedElementUtils.findMergedAnnotation(method.getBeanType(), RequiresPermission.class);
+        }
+        return required == null ? -1 : permissionRegistry.bitOf(required.value());
+    }
+}
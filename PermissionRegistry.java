@@ -0,0 +1,26 @@
+package com.klpbbs.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// 权限名到位编号的驻留表，编号从 0 开始分配且不会回收，同一个进程里同一个权限名的编号不变
+@Component
+public class PermissionRegistry {
+
+    private final ConcurrentHashMap<String, Integer> bits = new ConcurrentHashMap<>();
+
+    public int bitOf(String permission) {
+        Integer bit = bits.get(permission);
+        if (bit != null) {
+            return bit;
+        }
+        synchronized (bits) {
+            return bits.computeIfAbsent(permission, name -> bits.size());
+        }
+    }
+
+    public int size() {
+        return bits.size();
+    }
+}
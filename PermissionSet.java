@@ -0,0 +1,34 @@
+package com.klpbbs.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+// 用户的有效权限（角色权限与直接授予的权限的并集）编译成的位图，创建后不可变
+public final class PermissionSet {
+
+    public static final PermissionSet EMPTY = new PermissionSet(new long[0]);
+
+    private final long[] words;
+
+    private PermissionSet(long[] words) {
+        this.words = words;
+    }
+
+    public static PermissionSet of(Collection<String> permissions, PermissionRegistry registry) {
+        long[] words = new long[0];
+        for (String permission : permissions) {
+            int bit = registry.bitOf(permission);
+            int word = bit >>> 6;
+            if (word >= words.length) {
+                words = Arrays.copyOf(words, word + 1);
+            }
+            words[word] |= 1L << bit;
+        }
+        return words.length == 0 ? EMPTY : new PermissionSet(words);
+    }
+
+    public boolean has(int bit) {
+        int word = bit >>> 6;
+        return word < words.length && (words[word] & (1L << bit)) != 0;
+    }
+}
@@ -0,0 +1,51 @@
+package com.klpbbs.service;
+
+public class PointCredit {
+
+    private Long userId;
+    private int delta;
+    private String reason;
+    private String idempotencyKey;
+
+    public PointCredit() {
+    }
+
+    public PointCredit(Long userId, int delta, String reason, String idempotencyKey) {
+        this.userId = userId;
+        this.delta = delta;
+        this.reason = reason;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    public void setDelta(int delta) {
+        this.delta = delta;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+}
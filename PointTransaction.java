@@ -0,0 +1,79 @@
+package com.klpbbs.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// 积分流水，只追加不修改；用户积分等于其全部流水之和
+@Entity
+@Table(name = "point_transaction",
+        uniqueConstraints = @UniqueConstraint(columnNames = "idempotency_key"),
+        indexes = @Index(columnList = "user_id"))
+public class PointTransaction {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private Integer delta;
+
+    @Column(length = 32, nullable = false)
+    private String reason;
+
+    @Column(name = "idempotency_key", length = 100, nullable = false)
+    private String idempotencyKey;
+
+    private LocalDateTime createTime;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Integer getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+}
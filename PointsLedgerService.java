@@ -0,0 +1,334 @@
+package com.klpbbs.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import com.klpbbs.support.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 积分账本：每次变动先追加一条带幂等键的流水，再在同一事务里用原子 UPDATE 调整余额
+// 加分走内存队列批量写入；扣分需要判断余额，同步执行条件更新
+@Service
+public class PointsLedgerService {
+
+    private static final Logger log = LoggerFactory.getLogger(PointsLedgerService.class);
+
+    // 与 point_transaction 的列长度一致
+    private static final int MAX_REASON_LENGTH = 32;
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private static final String INSERT_SQL = "INSERT INTO point_transaction (user_id, delta, reason, idempotency_key, create_time) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_IGNORE_SQL = "INSERT IGNORE INTO point_transaction (user_id, delta, reason, idempotency_key, create_time) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final String EXISTING_KEYS_SQL = "SELECT idempotency_key FROM point_transaction WHERE idempotency_key IN (:keys)";
+    private static final String CREDIT_SQL = "UPDATE users SET points = points + ?, update_time = ? WHERE id = ?";
+    // 带上读取时的等级，期间已经升过级的请求不会按旧价格再升一次
+    private static final String UPGRADE_SQL = "UPDATE users SET points = points - ?, level = level + 1, update_time = ? "
+            + "WHERE id = ? AND level = ? AND points >= ?";
+
+    // 没有流水的老用户先补一条期初余额，之后余额就能完全由流水推出
+    private static final String OPENING_SQL = "INSERT IGNORE INTO point_transaction (user_id, delta, reason, idempotency_key, create_time) "
+            + "SELECT u.id, u.points, 'OPENING', CONCAT('opening:', u.id), ? FROM users u WHERE u.id > ? AND u.id <= ? "
+            + "AND u.points <> 0 AND NOT EXISTS (SELECT 1 FROM point_transaction p WHERE p.user_id = u.id)";
+    private static final String MISMATCH_SQL = "SELECT u.id, u.points, COALESCE(SUM(p.delta), 0) FROM users u "
+            + "LEFT JOIN point_transaction p ON p.user_id = u.id WHERE u.id > ? AND u.id <= ? "
+            + "GROUP BY u.id, u.points HAVING u.points <> COALESCE(SUM(p.delta), 0)";
+    // 按差值修正，期间并发写入的流水和余额同步增加，差值不变
+    private static final String FIX_BALANCE_SQL = "UPDATE users SET points = points + ?, update_time = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Value("${klpbbs.points.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${klpbbs.points.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${klpbbs.points.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${klpbbs.points.reconcile-interval-hours:24}")
+    private long reconcileIntervalHours;
+
+    @Value("${klpbbs.points.reconcile-chunk-size:10000}")
+    private int reconcileChunkSize;
+
+    private BlockingQueue<PointCredit> queue;
+    // 写入失败的批次，只在 scheduler 线程里访问，下次优先重试
+    private final Deque<PointCredit> retry = new ArrayDeque<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    // 总是开启独立事务，积分可能在其他事务提交后的回调里写入
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService scheduler;
+    // 对账要扫全表，放在单独的线程里，不挡住加分的批量写入
+    private ScheduledExecutorService reconciler;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "points-ledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "points-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalHours, reconcileIntervalHours, TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        reconciler.shutdownNow();
+        scheduler.shutdown();
+        scheduler.awaitTermination(flushIntervalMs * 5, TimeUnit.MILLISECONDS);
+        flushQuietly();
+        if (!queue.isEmpty() || !retry.isEmpty()) {
+            log.warn("{} point credits were not written on shutdown", queue.size() + retry.size());
+        }
+    }
+
+    // 幂等键相同的重复请求只记一次；队列满时在调用线程里直接写入，起到背压作用
+    public void credit(Long userId, int delta, String reason, String idempotencyKey) {
+        if (!isValid(userId, delta, reason, idempotencyKey)) {
+            throw new RuntimeException("Invalid point credit");
+        }
+        PointCredit credit = new PointCredit(userId, delta, reason, idempotencyKey);
+        if (!queue.offer(credit)) {
+            write(List.of(credit));
+            return;
+        }
+        if (queue.size() >= batchSize && flushQueued.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    // 在调用方的事务里直接记流水并加余额，和调用方的其他写入一起提交或回滚；同一个幂等键只记一次
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean creditInTransaction(Long userId, int delta, String reason, String idempotencyKey) {
+        if (!isValid(userId, delta, reason, idempotencyKey)) {
+            throw new RuntimeException("Invalid point credit");
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (jdbcTemplate.update(INSERT_IGNORE_SQL, userId, delta, reason, idempotencyKey, now) == 0) {
+            return false;
+        }
+        jdbcTemplate.update(CREDIT_SQL, delta, now, userId);
+        AfterCommit.run(() -> entityCacheService.evictUserId(userId));
+        leaderboardService.refreshAfterCommit(userId);
+        return true;
+    }
+
+    public void creditAll(List<PointCredit> credits) {
+        for (PointCredit credit : credits) {
+            credit(credit.getUserId(), credit.getDelta(), credit.getReason(), credit.getIdempotencyKey());
+        }
+    }
+
+    // 从 level 升一级并扣 cost 积分，余额不足或等级已变化时返回 false；同一个幂等键重试直接返回 true
+    public boolean upgrade(Long userId, int level, int cost, String idempotencyKey) {
+        if (cost <= 0) {
+            throw new RuntimeException("Invalid upgrade cost");
+        }
+        Boolean upgraded = transactionTemplate.execute(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            int inserted = jdbcTemplate.update(INSERT_IGNORE_SQL, userId, -cost, "UPGRADE", idempotencyKey, now);
+            if (inserted == 0) {
+                return true;
+            }
+            if (jdbcTemplate.update(UPGRADE_SQL, cost, now, userId, level, cost) == 0) {
+                status.setRollbackOnly();
+                return false;
+            }
+            return true;
+        });
+        entityCacheService.evictUserId(userId);
+        return Boolean.TRUE.equals(upgraded);
+    }
+
+    public void flush() {
+        flushQueued.set(false);
+        while (true) {
+            List<PointCredit> batch = new ArrayList<>(batchSize);
+            while (!retry.isEmpty() && batch.size() < batchSize) {
+                batch.add(retry.poll());
+            }
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                log.warn("Failed to write {} point credits as a batch, retrying one by one", batch.size(), e);
+                if (!writeOneByOne(batch)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public static boolean isValid(Long userId, int delta, String reason, String idempotencyKey) {
+        return userId != null && delta > 0
+                && reason != null && !reason.isEmpty() && reason.length() <= MAX_REASON_LENGTH
+                && idempotencyKey != null && !idempotencyKey.isEmpty() && idempotencyKey.length() <= MAX_KEY_LENGTH;
+    }
+
+    // 重建余额：先补期初流水，再把余额与流水之和不一致的用户改成流水之和
+    public int reconcile() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM users", Long.class);
+        int fixed = 0;
+        for (long from = 0; from < maxId; from += reconcileChunkSize) {
+            long to = from + reconcileChunkSize;
+            Integer chunkFixed = transactionTemplate.execute(status -> {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                jdbcTemplate.update(OPENING_SQL, now, from, to);
+                List<Object[]> mismatches = jdbcTemplate.query(MISMATCH_SQL,
+                        (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)}, from, to);
+                for (Object[] row : mismatches) {
+                    log.warn("Points of user {} drifted from ledger: balance {}, ledger {}", row[0], row[1], row[2]);
+                    jdbcTemplate.update(FIX_BALANCE_SQL, (Long) row[2] - (Long) row[1], now, row[0]);
+                    entityCacheService.evictUserId((Long) row[0]);
+                    leaderboardService.refreshAfterCommit((Long) row[0]);
+                }
+                return mismatches.size();
+            });
+            fixed += chunkFixed == null ? 0 : chunkFixed;
+        }
+        return fixed;
+    }
+
+    // 同一批里先按幂等键去重，再剔除库里已有的键；并发写入撞上唯一约束时整批回滚重试
+    private void write(List<PointCredit> credits) {
+        Map<String, PointCredit> byKey = new LinkedHashMap<>();
+        for (PointCredit credit : credits) {
+            byKey.putIfAbsent(credit.getIdempotencyKey(), credit);
+        }
+        Set<Long> userIds = new HashSet<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<String> existing = new HashSet<>(namedParameterJdbcTemplate.queryForList(EXISTING_KEYS_SQL,
+                        new MapSqlParameterSource("keys", byKey.keySet()), String.class));
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                List<Object[]> rows = new ArrayList<>();
+                Map<Long, Long> balances = new LinkedHashMap<>();
+                for (PointCredit credit : byKey.values()) {
+                    if (existing.contains(credit.getIdempotencyKey())) {
+                        continue;
+                    }
+                    rows.add(new Object[]{credit.getUserId(), credit.getDelta(), credit.getReason(), credit.getIdempotencyKey(), now});
+                    balances.merge(credit.getUserId(), (long) credit.getDelta(), Long::sum);
+                }
+                if (rows.isEmpty()) {
+                    return;
+                }
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                List<Object[]> updates = new ArrayList<>(balances.size());
+                balances.forEach((userId, delta) -> updates.add(new Object[]{delta, now, userId}));
+                jdbcTemplate.batchUpdate(CREDIT_SQL, updates);
+                userIds.addAll(balances.keySet());
+            });
+        } catch (DuplicateKeyException e) {
+            throw new RuntimeException("Concurrent duplicate point credit, will retry", e);
+        }
+        userIds.forEach(entityCacheService::evictUserId);
+        // 事务已经提交，这里会立即刷新排行榜
+        userIds.forEach(leaderboardService::refreshAfterCommit);
+    }
+
+    // 整批失败后逐条写入：数据本身有问题的记日志丢弃，其余放回 retry；遇到临时故障时剩下的也放回，等下次 flush
+    private boolean writeOneByOne(List<PointCredit> batch) {
+        boolean healthy = true;
+        for (PointCredit credit : batch) {
+            if (!healthy) {
+                retry.addLast(credit);
+                continue;
+            }
+            try {
+                write(List.of(credit));
+            } catch (RuntimeException e) {
+                if (isPermanent(e)) {
+                    log.error("Dropping point credit {} for user {} (delta {}, reason {}): {}",
+                            credit.getIdempotencyKey(), credit.getUserId(), credit.getDelta(), credit.getReason(), e.getMessage());
+                } else {
+                    log.warn("Failed to write point credit {}, will retry", credit.getIdempotencyKey(), e);
+                    retry.addLast(credit);
+                    healthy = false;
+                }
+            }
+        }
+        return healthy;
+    }
+
+    // 唯一约束冲突说明并发写入了同一个键，重试时会被当作已存在跳过；其他约束错误重试也不会成功
+    private static boolean isPermanent(RuntimeException e) {
+        return e instanceof DataIntegrityViolationException && !(e instanceof DuplicateKeyException);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to write point credits, will retry", e);
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            int fixed = reconcile();
+            log.info("Points reconciliation finished, {} balances corrected", fixed);
+        } catch (RuntimeException e) {
+            log.error("Points reconciliation failed", e);
+        }
+    }
+}
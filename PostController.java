@@ -1,12 +1,19 @@
 package com.klpbbs.controller;
 
 import com.klpbbs.entity.Post;
+import com.klpbbs.service.AuthService;
+import com.klpbbs.service.PostFilter;
 import com.klpbbs.service.PostService;
+import com.klpbbs.service.PostSortOrder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -17,6 +24,9 @@ public class PostController {
     @Autowired
     private PostService postService;
 
+    @Autowired
+    private AuthService authService;
+
     @PostMapping
     public ResponseEntity<?> createPost(@RequestBody Post post) {
         Post createdPost = postService.createPost(post);
@@ -54,87 +64,147 @@ public class PostController {
         return ResponseEntity.ok(post);
     }
 
+    @PostMapping("/{id}/like")
+    public ResponseEntity<?> likePost(@PathVariable Long id, @RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        postService.likePost(id, userId);
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/{id}/share")
+    public ResponseEntity<?> sharePost(@PathVariable Long id, @RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        postService.sharePost(id);
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/{id}/collect")
+    public ResponseEntity<?> collectPost(@PathVariable Long id, @RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        postService.collectPost(id, userId);
+        return ResponseEntity.accepted().build();
+    }
+
+    @GetMapping("/hot")
+    public ResponseEntity<?> getHotPosts(@RequestParam(required = false) String category,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        List<Long> postIds = postService.getHotPosts(category, Math.min(limit, 200));
+        return ResponseEntity.ok(postIds);
+    }
+
     @GetMapping("/search")
-    public ResponseEntity<?> searchPosts(@RequestParam String keyword) {
-        List<Post> posts = postService.searchPosts(keyword);
+    public ResponseEntity<?> searchPosts(@RequestParam String keyword,
+                                         @RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(defaultValue = "20") int size) {
+        Page<Post> posts = postService.searchPosts(keyword, Math.max(0, Math.min(page, 1000)), Math.max(1, Math.min(size, 100)));
         return ResponseEntity.ok(posts);
     }
 
     @GetMapping("/category/{category}/status/{status}")
-    public ResponseEntity<?> getPostsByCategoryAndStatus(@PathVariable String category, @PathVariable String status) {
-        List<Post> posts = postService.getPostsByCategoryAndStatus(category, status);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByCategoryAndStatus(@PathVariable String category, @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.byCategoryAndStatus(category, status), cursor, limit, stream);
     }
 
     @GetMapping("/tag/{tag}")
-    public ResponseEntity<?> getPostsByTag(@PathVariable String tag) {
-        List<Post> posts = postService.getPostsByTag(tag);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByTag(@PathVariable String tag,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.byTag(tag), cursor, limit, stream);
     }
 
     @GetMapping("/author/{author}")
-    public ResponseEntity<?> getPostsByAuthor(@PathVariable String author) {
-        List<Post> posts = postService.getPostsByAuthor(author);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByAuthor(@PathVariable String author,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.byAuthor(author), cursor, limit, stream);
     }
 
     @GetMapping("/status/{status}")
-    public ResponseEntity<?> getPostsByStatus(@PathVariable String status) {
-        List<Post> posts = postService.getPostsByStatus(status);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByStatus(@PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.byStatus(status), cursor, limit, stream);
     }
 
     @GetMapping("/type/{type}")
-    public ResponseEntity<?> getPostsByType(@PathVariable String type) {
-        List<Post> posts = postService.getPostsByType(type);
-        return ResponseEntity.ok(posts);
+    public ResponseEntity<?> getPostsByType(@PathVariable String type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String stream) {
+        return PostListResponses.list(postService, PostFilter.byType(type), cursor, limit, stream);
+    }
+
+    // 例如 /api/posts/sort?postIds=1,2,3&sort=views:desc&sort=likes:desc
+    @GetMapping("/sort")
+    public ResponseEntity<?> sortPosts(@RequestParam List<Long> postIds, @RequestParam List<String> sort) {
+        List<PostSortOrder> orders = new ArrayList<>(sort.size());
+        for (String order : sort) {
+            orders.add(PostSortOrder.parse(order));
+        }
+        List<Long> sortedPostIds = postService.sortPosts(postIds, orders);
+        return ResponseEntity.ok(sortedPostIds);
     }
 
     @GetMapping("/sort/views")
     public ResponseEntity<?> sortPostsByViews(@RequestParam Set<Long> postIds) {
-        Set<Long> sortedPostIds = postService.sortPostsByViews(postIds);
+        List<Long> sortedPostIds = postService.sortPostsByViews(postIds);
         return ResponseEntity.ok(sortedPostIds);
     }
 
     @GetMapping("/sort/likes")
     public ResponseEntity<?> sortPostsByLikes(@RequestParam Set<Long> postIds) {
-        Set<Long> sortedPostIds = postService.sortPostsByLikes(postIds);
+        List<Long> sortedPostIds = postService.sortPostsByLikes(postIds);
         return ResponseEntity.ok(sortedPostIds);
     }
 
     @GetMapping("/sort/comments")
     public ResponseEntity<?> sortPostsByComments(@RequestParam Set<Long> postIds) {
-        Set<Long> sortedPostIds = postService.sortPostsByComments(postIds);
+        List<Long> sortedPostIds = postService.sortPostsByComments(postIds);
         return ResponseEntity.ok(sortedPostIds);
     }
 
     @GetMapping("/sort/shares")
     public ResponseEntity<?> sortPostsByShares(@RequestParam Set<Long> postIds) {
-        Set<Long> sortedPostIds = postService.sortPostsByShares(postIds);
+        List<Long> sortedPostIds = postService.sortPostsByShares(postIds);
         return ResponseEntity.ok(sortedPostIds);
     }
 
     @GetMapping("/sort/collections")
     public ResponseEntity<?> sortPostsByCollections(@RequestParam Set<Long> postIds) {
-        Set<Long> sortedPostIds = postService.sortPostsByCollections(postIds);
+        List<Long> sortedPostIds = postService.sortPostsByCollections(postIds);
         return ResponseEntity.ok(sortedPostIds);
     }
 
     @GetMapping("/sort/publish-time")
     public ResponseEntity<?> sortPostsByPublishTime(@RequestParam Set<Long> postIds) {
-        Set<Long> sortedPostIds = postService.sortPostsByPublishTime(postIds);
+        List<Long> sortedPostIds = postService.sortPostsByPublishTime(postIds);
         return ResponseEntity.ok(sortedPostIds);
     }
 
     @GetMapping("/sort/update-time")
     public ResponseEntity<?> sortPostsByUpdateTime(@RequestParam Set<Long> postIds) {
-        Set<Long> sortedPostIds = postService.sortPostsByUpdateTime(postIds);
+        List<Long> sortedPostIds = postService.sortPostsByUpdateTime(postIds);
         return ResponseEntity.ok(sortedPostIds);
     }
 
     @GetMapping("/sort/create-time")
     public ResponseEntity<?> sortPostsByCreateTime(@RequestParam Set<Long> postIds) {
-        Set<Long> sortedPostIds = postService.sortPostsByCreateTime(postIds);
+        List<Long> sortedPostIds = postService.sortPostsByCreateTime(postIds);
         return ResponseEntity.ok(sortedPostIds);
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.klpbbs.service;
+
+public class PostFilter {
+
+    public enum Kind {
+        ALL, STATUS, TYPE, TAG, AUTHOR, CATEGORY_AND_STATUS
+    }
+
+    private final Kind kind;
+    private final String value;
+    private final String status;
+
+    private PostFilter(Kind kind, String value, String status) {
+        this.kind = kind;
+        this.value = value;
+        this.status = status;
+    }
+
+    public static PostFilter all() {
+        return new PostFilter(Kind.ALL, null, null);
+    }
+
+    public static PostFilter byStatus(String status) {
+        return new PostFilter(Kind.STATUS, null, status);
+    }
+
+    public static PostFilter byType(String type) {
+        return new PostFilter(Kind.TYPE, type, null);
+    }
+
+    public static PostFilter byTag(String tag) {
+        return new PostFilter(Kind.TAG, tag, null);
+    }
+
+    public static PostFilter byAuthor(String author) {
+        return new PostFilter(Kind.AUTHOR, author, null);
+    }
+
+    public static PostFilter byCategoryAndStatus(String category, String status) {
+        return new PostFilter(Kind.CATEGORY_AND_STATUS, category, status);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+}
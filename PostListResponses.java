@@ -0,0 +1,31 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.service.PostFilter;
+import com.klpbbs.service.PostService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// 帖子列表接口的公共响应：默认游标分页，stream=ndjson/json 时流式输出全部结果
+public final class PostListResponses {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private PostListResponses() {
+    }
+
+    public static ResponseEntity<?> list(PostService postService, PostFilter filter, String cursor, int limit, String stream) {
+        if (stream == null) {
+            return ResponseEntity.ok(postService.getPosts(filter, cursor, limit));
+        }
+
+        if (!"ndjson".equalsIgnoreCase(stream) && !"json".equalsIgnoreCase(stream)) {
+            return ResponseEntity.badRequest().body("stream must be ndjson or json");
+        }
+        boolean ndjson = "ndjson".equalsIgnoreCase(stream);
+        StreamingResponseBody body = out -> postService.streamPosts(filter, ndjson, out);
+        return ResponseEntity.ok()
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+}
@@ -0,0 +1,403 @@
+package com.klpbbs.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.klpbbs.entity.Post;
+import com.klpbbs.repository.PostRepository;
+import com.klpbbs.support.AfterCommit;
+import com.klpbbs.support.LongIntHashMap;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// 帖子排序字段的列式快照：每个排序键一列 long[]，按稠密序号下标访问，排序时不查库
+// 行的列顺序与 PostSortKey 一致：id, views, likes, comments, shares, collections, publishTime, updateTime, createTime
+@Component
+public class PostMetricsSnapshot implements EngagementListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PostMetricsSnapshot.class);
+
+    private static final PostSortKey[] KEYS = PostSortKey.values();
+    private static final int COUNTER_KEYS = EngagementType.values().length;
+
+    // 时间为空时当作最小值，降序时排在最后，与 MySQL 的 ORDER BY ... DESC 一致
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    // 计数服务回调本类，用 ObjectProvider 在使用时再取，避免循环依赖
+    @Autowired
+    private ObjectProvider<EngagementCounterService> engagementCounterService;
+
+    @Value("${klpbbs.post-sort.warm-page-size:5000}")
+    private int warmPageSize;
+
+    @Value("${klpbbs.post-sort.sync-interval-ms:60000}")
+    private long syncIntervalMs;
+
+    @Value("${klpbbs.post-sort.max-ids:10000}")
+    private int maxIds;
+
+    @Value("${klpbbs.post-sort.max-absent-ids:100000}")
+    private long maxAbsentIds;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 以下由 lock 保护；帖子只增不删，删除的帖子状态变化不影响排序字段
+    // 计数列是原子数组，事件只需要读锁；新增行、扩容和时间列的修改需要写锁
+    private final LongIntHashMap ordinals = new LongIntHashMap(1024);
+    private final AtomicLongArray[] counterColumns = new AtomicLongArray[COUNTER_KEYS];
+    private final long[][] timeColumns = new long[KEYS.length - COUNTER_KEYS][1024];
+    private int size;
+
+    // 有事件发生或还不在快照里的帖子，下次同步时按数据库加未落库增量重新读取计数
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    // 查过库但不存在的 id，避免随机 id 每次都查库；帖子创建时移除
+    private Cache<Long, Boolean> absent;
+
+    private volatile LocalDateTime lastSync;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        absent = Caffeine.newBuilder()
+                .maximumSize(maxAbsentIds)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+        for (int slot = 0; slot < COUNTER_KEYS; slot++) {
+            counterColumns[slot] = new AtomicLongArray(1024);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "post-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::warm);
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // 按给定的多个排序键排序，最后按 id 降序保证结果稳定；不存在的帖子不出现在结果里
+    public List<Long> sort(Collection<Long> postIds, List<PostSortOrder> orders) {
+        if (postIds.size() > maxIds) {
+            throw new RuntimeException("Too many post ids");
+        }
+        if (orders.isEmpty()) {
+            throw new RuntimeException("Sort order is required");
+        }
+        loadMissing(postIds);
+
+        int[] keySlots = new int[orders.size()];
+        int[] signs = new int[orders.size()];
+        for (int k = 0; k < orders.size(); k++) {
+            keySlots[k] = orders.get(k).getKey().ordinal();
+            signs[k] = orders.get(k).isDescending() ? -1 : 1;
+        }
+
+        // 在读锁内把需要的列拷成紧凑数组，排序在锁外进行
+        long[] rowIds = new long[postIds.size()];
+        long[][] values = new long[keySlots.length][postIds.size()];
+        int n = 0;
+        lock.readLock().lock();
+        try {
+            for (Long postId : postIds) {
+                int ordinal = postId == null ? -1 : ordinals.get(postId);
+                if (ordinal < 0) {
+                    continue;
+                }
+                rowIds[n] = postId;
+                for (int k = 0; k < keySlots.length; k++) {
+                    values[k][n] = valueLocked(keySlots[k], ordinal);
+                }
+                n++;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[n], 0, n, (a, b) -> {
+            for (int k = 0; k < keySlots.length; k++) {
+                int cmp = Long.compare(values[k][a], values[k][b]);
+                if (cmp != 0) {
+                    return cmp * signs[k];
+                }
+            }
+            return Long.compare(rowIds[b], rowIds[a]);
+        });
+
+        List<Long> sorted = new ArrayList<>(n);
+        for (int i : order) {
+            sorted.add(rowIds[i]);
+        }
+        return sorted;
+    }
+
+    // 快照里的计数已经包含尚未落库的增量，按 EngagementType 的顺序排列；不在快照里返回 null
+    public long[] counters(Long postId) {
+        lock.readLock().lock();
+        try {
+            int ordinal = ordinals.get(postId);
+            if (ordinal < 0) {
+                return null;
+            }
+            long[] counters = new long[COUNTER_KEYS];
+            for (int slot = 0; slot < COUNTER_KEYS; slot++) {
+                counters[slot] = counterColumns[slot].get(ordinal);
+            }
+            return counters;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 先累加再标记，与同步时的重新读取交错产生的偏差会在下一轮同步中纠正
+    @Override
+    public void onEngagement(long postId, EngagementType type, int delta) {
+        lock.readLock().lock();
+        try {
+            int ordinal = ordinals.get(postId);
+            if (ordinal >= 0) {
+                counterColumns[type.ordinal()].addAndGet(ordinal, delta);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        dirty.add(postId);
+    }
+
+    // 实体里的计数可能落后于内存增量，已有的帖子只更新时间列，新帖子等下次同步再读准确计数
+    public void upsertAfterCommit(Post post) {
+        Object[] row = {post.getId(), post.getViews(), post.getLikes(), post.getComments(), post.getShares(),
+                post.getCollections(), post.getPublishTime(), post.getUpdateTime(), post.getCreateTime()};
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                putLocked(row, false);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            absent.invalidate(post.getId());
+            dirty.add(post.getId());
+        });
+    }
+
+    // 在请求线程里执行，不暂停计数刷新；读到的计数可能差一个批次，标记为 dirty 由下一轮同步纠正
+    private void loadMissing(Collection<Long> postIds) {
+        List<Long> missing = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Long postId : postIds) {
+                if (postId != null && ordinals.get(postId) < 0 && absent.getIfPresent(postId) == null) {
+                    missing.add(postId);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        EngagementCounterService counters = engagementCounterService.getObject();
+        List<Object[]> rows = counters.readWithoutPausingFlush(
+                () -> withPendingDelta(counters, postRepository.findMetricsFieldsByIdIn(missing)));
+        putAll(rows, true);
+        Set<Long> found = new HashSet<>();
+        for (Object[] row : rows) {
+            found.add((Long) row[0]);
+        }
+        for (Long postId : missing) {
+            if (found.contains(postId)) {
+                dirty.add(postId);
+            } else {
+                absent.put(postId, Boolean.TRUE);
+            }
+        }
+    }
+
+    private void warm() {
+        try {
+            lastSync = LocalDateTime.now();
+            long lastId = 0;
+            List<Object[]> rows;
+            do {
+                long after = lastId;
+                rows = readRows(() -> postRepository.findMetricsFieldsAfter(after, PageRequest.of(0, warmPageSize)));
+                putAll(rows, true);
+                if (!rows.isEmpty()) {
+                    lastId = (Long) rows.get(rows.size() - 1)[0];
+                }
+            } while (rows.size() == warmPageSize);
+            log.info("Post metrics snapshot warmed with {} posts", size);
+        } catch (RuntimeException e) {
+            log.error("Failed to warm post metrics snapshot", e);
+        }
+    }
+
+    // 兜底同步其他途径修改的帖子，并重新读取有过事件的帖子的计数，纠正与内存累加之间的偏差
+    private void syncQuietly() {
+        if (lastSync == null) {
+            return;
+        }
+        try {
+            LocalDateTime since = lastSync.minusSeconds(5);
+            lastSync = LocalDateTime.now();
+            // 先取走标记再读库，读取期间的新事件会重新标记，留到下一轮
+            List<Long> ids = new ArrayList<>();
+            for (Iterator<Long> it = dirty.iterator(); it.hasNext(); ) {
+                ids.add(it.next());
+                it.remove();
+            }
+            putAll(readRows(() -> postRepository.findMetricsFieldsUpdatedAfter(since)), false);
+            for (int i = 0; i < ids.size(); i += warmPageSize) {
+                List<Long> chunk = ids.subList(i, Math.min(i + warmPageSize, ids.size()));
+                putAll(readRows(() -> postRepository.findMetricsFieldsByIdIn(chunk)), false);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to sync post metrics snapshot", e);
+        }
+    }
+
+    // 读库和取未落库增量期间暂停计数刷新，两者相加就是读取时刻的准确计数
+    private List<Object[]> readRows(Supplier<List<Object[]>> query) {
+        EngagementCounterService counters = engagementCounterService.getObject();
+        return counters.whileFlushPaused(() -> withPendingDelta(counters, query.get()));
+    }
+
+    private static List<Object[]> withPendingDelta(EngagementCounterService counters, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            long[] delta = counters.pendingDelta((Long) row[0]);
+            for (int slot = 0; slot < COUNTER_KEYS; slot++) {
+                Object value = row[slot + 1];
+                row[slot + 1] = (value == null ? 0 : ((Number) value).longValue()) + delta[slot];
+            }
+        }
+        return rows;
+    }
+
+    private void putAll(List<Object[]> rows, boolean onlyIfAbsent) {
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                if (!onlyIfAbsent || ordinals.get((Long) row[0]) < 0) {
+                    putLocked(row, true);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // withCounters 为 false 时已有的帖子只更新时间列
+    private void putLocked(Object[] row, boolean withCounters) {
+        long postId = (Long) row[0];
+        int ordinal = ordinals.get(postId);
+        boolean fresh = ordinal < 0;
+        if (fresh) {
+            ordinal = size++;
+            if (ordinal == timeColumns[0].length) {
+                grow();
+            }
+            ordinals.put(postId, ordinal);
+        }
+        for (int slot = 0; slot < KEYS.length; slot++) {
+            Object value = row[slot + 1];
+            if (slot < COUNTER_KEYS) {
+                if (fresh || withCounters) {
+                    counterColumns[slot].set(ordinal, value == null ? 0 : ((Number) value).longValue());
+                }
+            } else {
+                timeColumns[slot - COUNTER_KEYS][ordinal] = value == null ? NULL_TIME
+                        : ((LocalDateTime) value).toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+        }
+    }
+
+    private long valueLocked(int slot, int ordinal) {
+        return slot < COUNTER_KEYS ? counterColumns[slot].get(ordinal) : timeColumns[slot - COUNTER_KEYS][ordinal];
+    }
+
+    private void grow() {
+        int length = timeColumns[0].length;
+        int capacity = length * 2;
+        for (int slot = 0; slot < COUNTER_KEYS; slot++) {
+            AtomicLongArray grown = new AtomicLongArray(capacity);
+            for (int i = 0; i < length; i++) {
+                grown.set(i, counterColumns[slot].get(i));
+            }
+            counterColumns[slot] = grown;
+        }
+        for (int slot = 0; slot < timeColumns.length; slot++) {
+            timeColumns[slot] = Arrays.copyOf(timeColumns[slot], capacity);
+        }
+    }
+
+    private interface IntComparator {
+        int compare(int a, int b);
+    }
+
+    // 对下标数组做稳定的归并排序，避免装箱
+    private static void mergeSort(int[] a, int[] buffer, int from, int to, IntComparator comparator) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int value = a[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(a[j], value) > 0) {
+                    a[j + 1] = a[j];
+                    j--;
+                }
+                a[j + 1] = value;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, buffer, from, mid, comparator);
+        mergeSort(a, buffer, mid, to, comparator);
+        if (comparator.compare(a[mid - 1], a[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(a, from, buffer, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && comparator.compare(buffer[i], buffer[j]) <= 0)) {
+                a[k] = buffer[i++];
+            } else {
+                a[k] = buffer[j++];
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.klpbbs.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// 用户对帖子的点赞、收藏记录，每人每帖每种只有一行，用来给计数去重
+@Entity
+@Table(name = "post_reaction",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "post_id", "type"}),
+        indexes = @Index(columnList = "post_id"))
+public class PostReaction {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    @Column(length = 16, nullable = false)
+    private String type;
+
+    private LocalDateTime createTime;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getPostId() {
+        return postId;
+    }
+
+    public void setPostId(Long postId) {
+        this.postId = postId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+}
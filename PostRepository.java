@@ -1,76 +1,92 @@
 package com.klpbbs.repository;
 
 import com.klpbbs.entity.Post;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long>, JpaSpecificationExecutor<Post> {
 
-    List<Post> findByTitleContainingOrSummaryContainingOrKeywordsContaining(String title, String summary, String keywords);
+    Page<Post> findByTitleContainingOrSummaryContainingOrKeywordsContaining(String title, String summary, String keywords, Pageable pageable);
 
-    List<Post> findByCategoryAndStatus(String category, String status);
+    // 搜索索引预热期间的兜底查询，和索引一样只返回已发布的帖子
+    @Query("SELECT p FROM Post p WHERE p.status = 'PUBLISHED' AND (p.title LIKE CONCAT('%', :keyword, '%') "
+            + "OR p.summary LIKE CONCAT('%', :keyword, '%') OR p.keywords LIKE CONCAT('%', :keyword, '%'))")
+    Page<Post> searchPublished(@Param("keyword") String keyword, Pageable pageable);
 
-    List<Post> findByTagsContaining(String tags);
+    Slice<Post> findByUpdateTimeAfter(LocalDateTime updateTime, Pageable pageable);
 
-    List<Post> findByAuthor(String author);
+    boolean existsByIdAndStatus(Long id, String status);
 
-    List<Post> findByStatus(String status);
+    List<Post> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
 
-    List<Post> findByType(String type);
+    List<Post> findByIdLessThanOrderByIdDesc(Long id, Pageable pageable);
 
-    @Query("SELECT p FROM Post p WHERE p.id = :postId")
-    Optional<Post> findPostWithUsersAndCommentsAndLikesAndCollectionsById(@Param("postId") Long postId);
+    List<Post> findByCategoryAndStatusAndIdLessThanOrderByIdDesc(String category, String status, Long id, Pageable pageable);
+
+    List<Post> findByTagsContainingAndIdLessThanOrderByIdDesc(String tags, Long id, Pageable pageable);
+
+    List<Post> findByAuthorAndIdLessThanOrderByIdDesc(String author, Long id, Pageable pageable);
 
-    @Modifying
-    @Query("UPDATE Post p SET p.views = p.views + 1 WHERE p.id = :postId")
-    int incrementViews(@Param("postId") Long postId);
+    List<Post> findByStatusAndIdLessThanOrderByIdDesc(String status, Long id, Pageable pageable);
 
-    @Modifying
-    @Query("UPDATE Post p SET p.likes = p.likes + 1 WHERE p.id = :postId")
-    int incrementLikes(@Param("postId") Long postId);
+    List<Post> findByTypeAndIdLessThanOrderByIdDesc(String type, Long id, Pageable pageable);
 
-    @Modifying
-    @Query("UPDATE Post p SET p.comments = p.comments + 1 WHERE p.id = :postId")
-    int incrementComments(@Param("postId") Long postId);
+    // 流式导出，MySQL 需要在连接串上开启 useCursorFetch=true 才会按 fetchSize 分批读取
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "500"), @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<Post> streamAllByOrderByIdDesc();
 
-    @Modifying
-    @Query("UPDATE Post p SET p.shares = p.shares + 1 WHERE p.id = :postId")
-    int incrementShares(@Param("postId") Long postId);
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "500"), @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<Post> streamByCategoryAndStatusOrderByIdDesc(String category, String status);
 
-    @Modifying
-    @Query("UPDATE Post p SET p.collections = p.collections + 1 WHERE p.id = :postId")
-    int incrementCollections(@Param("postId") Long postId);
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "500"), @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<Post> streamByTagsContainingOrderByIdDesc(String tags);
 
-    @Query("SELECT p.id FROM Post p WHERE p.id IN :postIds ORDER BY p.views DESC")
-    Set<Long> sortPostsByViews(@Param("postIds") Set<Long> postIds);
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "500"), @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<Post> streamByAuthorOrderByIdDesc(String author);
 
-    @Query("SELECT p.id FROM Post p WHERE p.id IN :postIds ORDER BY p.likes DESC")
-    Set<Long> sortPostsByLikes(@Param("postIds") Set<Long> postIds);
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "500"), @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<Post> streamByStatusOrderByIdDesc(String status);
 
-    @Query("SELECT p.id FROM Post p WHERE p.id IN :postIds ORDER BY p.comments DESC")
-    Set<Long> sortPostsByComments(@Param("postIds") Set<Long> postIds);
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "500"), @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<Post> streamByTypeOrderByIdDesc(String type);
 
-    @Query("SELECT p.id FROM Post p WHERE p.id IN :postIds ORDER BY p.shares DESC")
-    Set<Long> sortPostsByShares(@Param("postIds") Set<Long> postIds);
+    @Query("SELECT p.id, p.category, p.publishTime, p.views, p.likes, p.comments, p.shares, p.collections "
+            + "FROM Post p WHERE p.status = 'PUBLISHED' AND p.publishTime > :since")
+    List<Object[]> findTrendingFieldsPublishedAfter(@Param("since") LocalDateTime since);
 
-    @Query("SELECT p.id FROM Post p WHERE p.id IN :postIds ORDER BY p.collections DESC")
-    Set<Long> sortPostsByCollections(@Param("postIds") Set<Long> postIds);
+    @Query("SELECT p.id, p.views, p.likes, p.comments, p.shares, p.collections, p.publishTime, p.updateTime, p.createTime "
+            + "FROM Post p WHERE p.id > :lastId ORDER BY p.id")
+    List<Object[]> findMetricsFieldsAfter(@Param("lastId") Long lastId, Pageable pageable);
 
-    @Query("SELECT p.id FROM Post p WHERE p.id IN :postIds ORDER BY p.publishTime DESC")
-    Set<Long> sortPostsByPublishTime(@Param("postIds") Set<Long> postIds);
+    @Query("SELECT p.id, p.views, p.likes, p.comments, p.shares, p.collections, p.publishTime, p.updateTime, p.createTime "
+            + "FROM Post p WHERE p.id IN :postIds")
+    List<Object[]> findMetricsFieldsByIdIn(@Param("postIds") Collection<Long> postIds);
 
-    @Query("SELECT p.id FROM Post p WHERE p.id IN :postIds ORDER BY p.updateTime DESC")
-    Set<Long> sortPostsByUpdateTime(@Param("postIds") Set<Long> postIds);
+    @Query("SELECT p.id, p.views, p.likes, p.comments, p.shares, p.collections, p.publishTime, p.updateTime, p.createTime "
+            + "FROM Post p WHERE p.updateTime > :since")
+    List<Object[]> findMetricsFieldsUpdatedAfter(@Param("since") LocalDateTime since);
 
-    @Query("SELECT p.id FROM Post p WHERE p.id IN :postIds ORDER BY p.createTime DESC")
-    Set<Long> sortPostsByCreateTime(@Param("postIds") Set<Long> postIds);
-}
\ No newline at end of file
+    @Query("SELECT p.id FROM Post p WHERE p.status = 'PUBLISHED' AND p.author IN :authors AND p.id < :beforeId ORDER BY p.id DESC")
+    List<Long> findPublishedIdsByAuthorIn(@Param("authors") Collection<String> authors, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("SELECT u.id FROM Post p, User u WHERE p.id = :postId AND u.username = p.author")
+    Optional<Long> findAuthorIdById(@Param("postId") Long postId);
+
+    @Query("SELECT p FROM Post p WHERE p.id = :postId")
+    Optional<Post> findPostWithUsersAndCommentsAndLikesAndCollectionsById(@Param("postId") Long postId);
+}
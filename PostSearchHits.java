@@ -0,0 +1,22 @@
+package com.klpbbs.search;
+
+import java.util.List;
+
+public class PostSearchHits {
+
+    private final long total;
+    private final List<Long> postIds;
+
+    public PostSearchHits(long total, List<Long> postIds) {
+        this.total = total;
+        this.postIds = postIds;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<Long> getPostIds() {
+        return postIds;
+    }
+}
@@ -0,0 +1,535 @@
+package com.klpbbs.search;
+
+import com.klpbbs.entity.Post;
+import com.klpbbs.repository.PostRepository;
+import com.klpbbs.support.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 帖子全文索引：磁盘上一个内存映射的基础段，加上内存里的增量层，定期合并成新段
+@Component
+public class PostSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PostSearchIndex.class);
+
+    private static final float TITLE_BOOST = 3f;
+    private static final float KEYWORDS_BOOST = 2f;
+    private static final float TAGS_BOOST = 2f;
+    private static final float SUMMARY_BOOST = 1f;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final String SEGMENT_PREFIX = "posts-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final long CATCH_UP_MARGIN_MS = 60_000;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Value("${klpbbs.search.index-dir:data/post-index}")
+    private String indexDir;
+
+    @Value("${klpbbs.search.merge-interval-ms:300000}")
+    private long mergeIntervalMs;
+
+    @Value("${klpbbs.search.warm-page-size:1000}")
+    private int warmPageSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock mergeLock = new ReentrantLock();
+
+    // guarded by lock
+    private PostSearchSegment base;
+    private MemoryLayer frozen;
+    private MemoryLayer active = new MemoryLayer();
+
+    private volatile boolean ready;
+    private Path directory;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        directory = Paths.get(indexDir);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "post-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::warm);
+        scheduler.scheduleWithFixedDelay(this::mergeQuietly, mergeIntervalMs, mergeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        if (ready) {
+            mergeQuietly();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // 只有已发布的帖子可以被搜到，其他状态从索引里移除
+    public void indexAfterCommit(Post post) {
+        if (!isSearchable(post)) {
+            removeAfterCommit(post.getId());
+            return;
+        }
+        IndexedDoc doc = toDoc(post);
+        AfterCommit.run(() -> apply(doc, true));
+    }
+
+    public void removeAfterCommit(Long postId) {
+        AfterCommit.run(() -> apply(new IndexedDoc(postId, null, 0), true));
+    }
+
+    public PostSearchHits search(String query, int offset, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(CjkTokenizer.tokenizeForQuery(query)));
+        if (terms.isEmpty()) {
+            return new PostSearchHits(0, Collections.emptyList());
+        }
+
+        Map<Long, Double> scores = null;
+        lock.readLock().lock();
+        try {
+            long docCount = layerDocCount();
+            double avgLength = docCount == 0 ? 1 : Math.max(1, (double) layerTotalLength() / docCount);
+
+            List<Map<Long, float[]>> matches = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<Long, float[]> postings = collect(term);
+                if (postings.isEmpty()) {
+                    return new PostSearchHits(0, Collections.emptyList());
+                }
+                matches.add(postings);
+            }
+            // 从最稀有的词开始求交集
+            matches.sort(Comparator.comparingInt(Map::size));
+
+            for (Map<Long, float[]> postings : matches) {
+                double df = postings.size();
+                double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+                if (scores == null) {
+                    scores = new HashMap<>(postings.size() * 2);
+                    for (Map.Entry<Long, float[]> entry : postings.entrySet()) {
+                        scores.put(entry.getKey(), bm25(idf, entry.getValue(), avgLength));
+                    }
+                } else {
+                    Iterator<Map.Entry<Long, Double>> it = scores.entrySet().iterator();
+                    while (it.hasNext()) {
+                        Map.Entry<Long, Double> entry = it.next();
+                        float[] posting = postings.get(entry.getKey());
+                        if (posting == null) {
+                            it.remove();
+                        } else {
+                            entry.setValue(entry.getValue() + bm25(idf, posting, avgLength));
+                        }
+                    }
+                    if (scores.isEmpty()) {
+                        return new PostSearchHits(0, Collections.emptyList());
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return topHits(scores, offset, limit);
+    }
+
+    public void merge() throws IOException {
+        mergeLock.lock();
+        try {
+            PostSearchSegment currentBase;
+            MemoryLayer snapshot;
+            long freezeTime;
+            lock.writeLock().lock();
+            try {
+                if (active.docs.isEmpty() && base != null) {
+                    return;
+                }
+                frozen = active;
+                active = new MemoryLayer();
+                snapshot = frozen;
+                currentBase = base;
+                freezeTime = System.currentTimeMillis();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            PostSearchSegment merged;
+            try {
+                merged = writeSegment(currentBase, snapshot, freezeTime);
+            } catch (IOException | RuntimeException e) {
+                // 合并失败，把冻结层放回增量层，新写入的优先
+                lock.writeLock().lock();
+                try {
+                    for (IndexedDoc doc : snapshot.docs.values()) {
+                        if (!active.docs.containsKey(doc.postId)) {
+                            active.put(doc);
+                        }
+                    }
+                    frozen = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                base = merged;
+                frozen = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (currentBase != null) {
+                Files.deleteIfExists(currentBase.getPath());
+            }
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    private void warm() {
+        try {
+            Files.createDirectories(directory);
+            Path latest = latestSegment();
+            if (latest != null) {
+                PostSearchSegment segment = PostSearchSegment.open(latest);
+                lock.writeLock().lock();
+                try {
+                    base = segment;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                // 段文件之后的改动从数据库补齐，不需要全量重建
+                catchUp(LocalDateTime.ofInstant(Instant.ofEpochMilli(segment.getCreatedAt() - CATCH_UP_MARGIN_MS),
+                        ZoneId.systemDefault()));
+                log.info("Loaded post search segment {} with {} posts", latest.getFileName(), segment.getDocCount());
+            } else {
+                rebuild();
+                merge();
+                log.info("Rebuilt post search index from database");
+            }
+            ready = true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to warm post search index, search falls back to database", e);
+        }
+    }
+
+    private void catchUp(LocalDateTime since) {
+        int page = 0;
+        Slice<Post> slice;
+        do {
+            slice = postRepository.findByUpdateTimeAfter(since, PageRequest.of(page++, warmPageSize, Sort.by("id")));
+            slice.forEach(post -> apply(isSearchable(post) ? toDoc(post) : new IndexedDoc(post.getId(), null, 0), false));
+        } while (slice.hasNext());
+    }
+
+    private void rebuild() {
+        long lastId = 0;
+        List<Post> posts;
+        do {
+            posts = postRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, warmPageSize));
+            for (Post post : posts) {
+                if (isSearchable(post)) {
+                    apply(toDoc(post), false);
+                }
+                lastId = post.getId();
+            }
+        } while (posts.size() == warmPageSize);
+    }
+
+    private Path latestSegment() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(path);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.add(path);
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            return null;
+        }
+        segments.sort(null);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+        return segments.get(segments.size() - 1);
+    }
+
+    private void apply(IndexedDoc doc, boolean overwrite) {
+        lock.writeLock().lock();
+        try {
+            if (overwrite || !active.docs.containsKey(doc.postId)) {
+                active.put(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Map<Long, float[]> collect(String term) {
+        Map<Long, float[]> postings = new HashMap<>();
+        Map<Long, IndexedDoc> activeDocs = active.postings.get(term);
+        if (activeDocs != null) {
+            activeDocs.values().forEach(doc -> postings.put(doc.postId, new float[]{doc.weights.get(term), doc.length}));
+        }
+        if (frozen != null) {
+            Map<Long, IndexedDoc> frozenDocs = frozen.postings.get(term);
+            if (frozenDocs != null) {
+                for (IndexedDoc doc : frozenDocs.values()) {
+                    if (!active.docs.containsKey(doc.postId)) {
+                        postings.put(doc.postId, new float[]{doc.weights.get(term), doc.length});
+                    }
+                }
+            }
+        }
+        if (base != null) {
+            int termIndex = base.findTerm(PostSearchSegment.encode(term));
+            if (termIndex >= 0) {
+                base.forEachPosting(termIndex, (postId, weight, length) -> {
+                    if (!active.docs.containsKey(postId) && (frozen == null || !frozen.docs.containsKey(postId))) {
+                        postings.put(postId, new float[]{weight, length});
+                    }
+                });
+            }
+        }
+        return postings;
+    }
+
+    private long layerDocCount() {
+        long count = active.docs.size() + (frozen == null ? 0 : frozen.docs.size());
+        return base == null ? count : count + base.getDocCount();
+    }
+
+    private long layerTotalLength() {
+        long total = active.totalLength + (frozen == null ? 0 : frozen.totalLength);
+        return base == null ? total : total + base.getTotalLength();
+    }
+
+    private static double bm25(double idf, float[] posting, double avgLength) {
+        double tf = posting[0];
+        return idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * posting[1] / avgLength));
+    }
+
+    private static PostSearchHits topHits(Map<Long, Double> scores, int offset, int limit) {
+        int wanted = (int) Math.min(Math.max(0L, (long) offset + limit), scores.size());
+        Comparator<Map.Entry<Long, Double>> order = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(Math.max(1, wanted), order);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (top.size() < wanted) {
+                top.add(entry);
+            } else if (wanted > 0 && order.compare(entry, top.peek()) > 0) {
+                top.poll();
+                top.add(entry);
+            }
+        }
+        List<Long> ranked = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            ranked.add(top.poll().getKey());
+        }
+        Collections.reverse(ranked);
+        List<Long> page = offset >= ranked.size() ? Collections.emptyList() : ranked.subList(offset, ranked.size());
+        return new PostSearchHits(scores.size(), new ArrayList<>(page));
+    }
+
+    private PostSearchSegment writeSegment(PostSearchSegment previous, MemoryLayer snapshot, long createdAt)
+            throws IOException {
+        Path target = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, createdAt, SEGMENT_SUFFIX));
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        List<byte[]> layerTerms = new ArrayList<>(snapshot.postings.size());
+        snapshot.postings.keySet().forEach(term -> layerTerms.add(PostSearchSegment.encode(term)));
+        layerTerms.sort(Arrays::compareUnsigned);
+
+        try (PostSearchSegment.Writer writer = new PostSearchSegment.Writer(tmp)) {
+            // 旧段词典和增量层词表都是有序的，归并写出
+            int baseTerms = previous == null ? 0 : previous.getTermCount();
+            int b = 0;
+            int l = 0;
+            while (b < baseTerms || l < layerTerms.size()) {
+                byte[] baseTerm = b < baseTerms ? previous.termAt(b) : null;
+                byte[] layerTerm = l < layerTerms.size() ? layerTerms.get(l) : null;
+                int cmp = baseTerm == null ? 1 : layerTerm == null ? -1 : Arrays.compareUnsigned(baseTerm, layerTerm);
+
+                writer.startTerm(cmp <= 0 ? baseTerm : layerTerm);
+                if (cmp <= 0) {
+                    previous.forEachPosting(b++, (postId, weight, length) -> {
+                        if (!snapshot.docs.containsKey(postId)) {
+                            addPosting(writer, postId, weight, length);
+                        }
+                    });
+                }
+                if (cmp >= 0) {
+                    String term = PostSearchSegment.decode(layerTerm);
+                    for (IndexedDoc doc : snapshot.postings.get(term).values()) {
+                        addPosting(writer, doc.postId, doc.weights.get(term), doc.length);
+                    }
+                    l++;
+                }
+                writer.endTerm();
+            }
+
+            TreeMap<Long, IndexedDoc> layerDocs = new TreeMap<>(snapshot.docs);
+            Iterator<IndexedDoc> pending = layerDocs.values().iterator();
+            IndexedDoc[] next = {pending.hasNext() ? pending.next() : null};
+            if (previous != null) {
+                previous.forEachDoc((postId, length) -> {
+                    while (next[0] != null && next[0].postId < postId) {
+                        if (!next[0].isDeleted()) {
+                            writer.addDoc(next[0].postId, next[0].length);
+                        }
+                        next[0] = pending.hasNext() ? pending.next() : null;
+                    }
+                    if (!snapshot.docs.containsKey(postId)) {
+                        writer.addDoc(postId, length);
+                    }
+                });
+            }
+            for (; next[0] != null; next[0] = pending.hasNext() ? pending.next() : null) {
+                if (!next[0].isDeleted()) {
+                    writer.addDoc(next[0].postId, next[0].length);
+                }
+            }
+            writer.finish(createdAt);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        return PostSearchSegment.open(target);
+    }
+
+    private static void addPosting(PostSearchSegment.Writer writer, long postId, float weight, int length) {
+        try {
+            writer.addPosting(postId, weight, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void mergeQuietly() {
+        if (!ready) {
+            return;
+        }
+        try {
+            merge();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to merge post search index", e);
+        }
+    }
+
+    private static boolean isSearchable(Post post) {
+        return "PUBLISHED".equals(post.getStatus());
+    }
+
+    private static IndexedDoc toDoc(Post post) {
+        Map<String, Float> weights = new HashMap<>();
+        int length = 0;
+        length += addField(weights, post.getTitle(), TITLE_BOOST);
+        length += addField(weights, post.getKeywords(), KEYWORDS_BOOST);
+        length += addField(weights, post.getTags(), TAGS_BOOST);
+        length += addField(weights, post.getSummary(), SUMMARY_BOOST);
+        return new IndexedDoc(post.getId(), weights, length);
+    }
+
+    private static int addField(Map<String, Float> weights, String text, float boost) {
+        List<String> tokens = CjkTokenizer.tokenizeForIndex(text);
+        int length = 0;
+        for (String token : tokens) {
+            // 段文件里词长用两个字节记录，超长的词不进索引
+            if (PostSearchSegment.encode(token).length > PostSearchSegment.MAX_TERM_BYTES) {
+                continue;
+            }
+            weights.merge(token, boost, Float::sum);
+            length++;
+        }
+        return length;
+    }
+
+    private static final class IndexedDoc {
+        final long postId;
+        // 为 null 表示已删除
+        final Map<String, Float> weights;
+        final int length;
+
+        IndexedDoc(long postId, Map<String, Float> weights, int length) {
+            this.postId = postId;
+            this.weights = weights;
+            this.length = length;
+        }
+
+        boolean isDeleted() {
+            return weights == null;
+        }
+    }
+
+    private static final class MemoryLayer {
+        final Map<Long, IndexedDoc> docs = new HashMap<>();
+        final Map<String, Map<Long, IndexedDoc>> postings = new HashMap<>();
+        long totalLength;
+
+        void put(IndexedDoc doc) {
+            IndexedDoc previous = docs.put(doc.postId, doc);
+            if (previous != null && !previous.isDeleted()) {
+                for (String term : previous.weights.keySet()) {
+                    Map<Long, IndexedDoc> docsForTerm = postings.get(term);
+                    docsForTerm.remove(previous.postId);
+                    if (docsForTerm.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+                totalLength -= previous.length;
+            }
+            if (!doc.isDeleted()) {
+                for (String term : doc.weights.keySet()) {
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(doc.postId, doc);
+                }
+                totalLength += doc.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.klpbbs.search;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// 只读的索引段文件，通过内存映射直接在文件上做词典二分查找和倒排遍历
+// 布局: header | postings | term bytes | doc table | term index
+final class PostSearchSegment {
+
+    interface PostingConsumer {
+        void accept(long postId, float weight, int length);
+    }
+
+    interface DocConsumer {
+        void accept(long postId, int length);
+    }
+
+    private static final int MAGIC = 0x4B4C5049;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int POSTING_SIZE = Long.BYTES + Float.BYTES + Integer.BYTES;
+    private static final int DOC_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int TERM_ENTRY_SIZE = 3 * Integer.BYTES;
+    // 词长用无符号 short 记录
+    static final int MAX_TERM_BYTES = 0xFFFF;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final long createdAt;
+    private final int docCount;
+    private final long totalLength;
+    private final int termCount;
+    private final int docTableOffset;
+    private final int termIndexOffset;
+
+    private PostSearchSegment(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not a post search segment: " + path);
+        }
+        this.createdAt = buffer.getLong(8);
+        this.docCount = buffer.getInt(16);
+        this.totalLength = buffer.getLong(20);
+        this.termCount = buffer.getInt(28);
+        this.docTableOffset = buffer.getInt(32);
+        this.termIndexOffset = buffer.getInt(36);
+    }
+
+    static PostSearchSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new PostSearchSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    int getDocCount() {
+        return docCount;
+    }
+
+    long getTotalLength() {
+        return totalLength;
+    }
+
+    int getTermCount() {
+        return termCount;
+    }
+
+    int findTerm(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, term);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    byte[] termAt(int termIndex) {
+        int offset = buffer.getInt(termIndexOffset + termIndex * TERM_ENTRY_SIZE);
+        byte[] bytes = new byte[buffer.getShort(offset) & 0xFFFF];
+        buffer.get(offset + Short.BYTES, bytes);
+        return bytes;
+    }
+
+    int documentFrequency(int termIndex) {
+        return buffer.getInt(termIndexOffset + termIndex * TERM_ENTRY_SIZE + 2 * Integer.BYTES);
+    }
+
+    void forEachPosting(int termIndex, PostingConsumer consumer) {
+        int entry = termIndexOffset + termIndex * TERM_ENTRY_SIZE;
+        int offset = buffer.getInt(entry + Integer.BYTES);
+        int df = buffer.getInt(entry + 2 * Integer.BYTES);
+        for (int i = 0; i < df; i++, offset += POSTING_SIZE) {
+            consumer.accept(buffer.getLong(offset), buffer.getFloat(offset + Long.BYTES),
+                    buffer.getInt(offset + Long.BYTES + Float.BYTES));
+        }
+    }
+
+    void forEachDoc(DocConsumer consumer) {
+        for (int i = 0, offset = docTableOffset; i < docCount; i++, offset += DOC_SIZE) {
+            consumer.accept(buffer.getLong(offset), buffer.getInt(offset + Long.BYTES));
+        }
+    }
+
+    private int compareTerm(int termIndex, byte[] term) {
+        int offset = buffer.getInt(termIndexOffset + termIndex * TERM_ENTRY_SIZE);
+        int length = buffer.getShort(offset) & 0xFFFF;
+        int start = offset + Short.BYTES;
+        int common = Math.min(length, term.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(start + i) & 0xFF, term[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, term.length);
+    }
+
+    static byte[] encode(String term) {
+        return term.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String decode(byte[] term) {
+        return new String(term, StandardCharsets.UTF_8);
+    }
+
+    // 词必须按 UTF-8 无符号字节序、文档按 id 升序依次写入
+    static final class Writer implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+        private final ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+
+        private int position = HEADER_SIZE;
+        private int[] termEntries = new int[3 * 1024];
+        private int termCount;
+        private long[] docIds = new long[1024];
+        private int[] docLengths = new int[1024];
+        private int docCount;
+        private long totalLength;
+
+        private int currentPostingsOffset;
+        private int currentDf;
+        private byte[] lastTerm;
+
+        Writer(Path target) throws IOException {
+            channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            channel.position(HEADER_SIZE);
+        }
+
+        void startTerm(byte[] term) {
+            if (term.length > MAX_TERM_BYTES) {
+                throw new IllegalArgumentException("Term is longer than " + MAX_TERM_BYTES + " bytes");
+            }
+            if (lastTerm != null && Arrays.compareUnsigned(lastTerm, term) >= 0) {
+                throw new IllegalArgumentException("Terms must be written in ascending order");
+            }
+            lastTerm = term;
+            currentPostingsOffset = position;
+            currentDf = 0;
+        }
+
+        void addPosting(long postId, float weight, int length) throws IOException {
+            ensureRoom(POSTING_SIZE);
+            out.putLong(postId).putFloat(weight).putInt(length);
+            position += POSTING_SIZE;
+            currentDf++;
+        }
+
+        void endTerm() {
+            if (currentDf == 0) {
+                return;
+            }
+            if (termEntries.length < (termCount + 1) * 3) {
+                termEntries = Arrays.copyOf(termEntries, termEntries.length * 2);
+            }
+            termEntries[termCount * 3] = termBytes.size();
+            termEntries[termCount * 3 + 1] = currentPostingsOffset;
+            termEntries[termCount * 3 + 2] = currentDf;
+            termBytes.write((lastTerm.length >>> 8) & 0xFF);
+            termBytes.write(lastTerm.length & 0xFF);
+            termBytes.write(lastTerm, 0, lastTerm.length);
+            termCount++;
+        }
+
+        void addDoc(long postId, int length) {
+            if (docCount == docIds.length) {
+                docIds = Arrays.copyOf(docIds, docCount * 2);
+                docLengths = Arrays.copyOf(docLengths, docCount * 2);
+            }
+            docIds[docCount] = postId;
+            docLengths[docCount] = length;
+            docCount++;
+            totalLength += length;
+        }
+
+        void finish(long createdAt) throws IOException {
+            int termBytesOffset = position;
+            byte[] terms = termBytes.toByteArray();
+            writeBytes(terms);
+
+            int docTableOffset = position;
+            for (int i = 0; i < docCount; i++) {
+                ensureRoom(DOC_SIZE);
+                out.putLong(docIds[i]).putInt(docLengths[i]);
+                position += DOC_SIZE;
+            }
+
+            int termIndexOffset = position;
+            for (int i = 0; i < termCount; i++) {
+                ensureRoom(TERM_ENTRY_SIZE);
+                out.putInt(termBytesOffset + termEntries[i * 3]).putInt(termEntries[i * 3 + 1]).putInt(termEntries[i * 3 + 2]);
+                position += TERM_ENTRY_SIZE;
+            }
+            drain();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(createdAt).putInt(docCount).putLong(totalLength)
+                    .putInt(termCount).putInt(docTableOffset).putInt(termIndexOffset).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensureRoom(1);
+                int chunk = Math.min(out.remaining(), bytes.length - offset);
+                out.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+            position += bytes.length;
+        }
+
+        private void ensureRoom(int bytes) throws IOException {
+            if (out.remaining() < bytes) {
+                drain();
+            }
+            if ((long) position + bytes > Integer.MAX_VALUE) {
+                throw new IOException("Post search segment exceeds 2GB");
+            }
+        }
+
+        private void drain() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+    }
+}
@@ -1,23 +1,85 @@
 package com.klpbbs.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.klpbbs.entity.Post;
 import com.klpbbs.repository.PostRepository;
+import com.klpbbs.search.PostSearchHits;
+import com.klpbbs.search.PostSearchIndex;
+import com.klpbbs.support.AfterCommit;
+import com.klpbbs.support.CursorPage;
+import com.klpbbs.support.IdCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
 public class PostService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int STREAM_FLUSH_EVERY = 100;
+
+    // (user_id, post_id, type) 上有唯一约束，返回 0 表示这个人已经赞过或收藏过
+    private static final String REACT_SQL = "INSERT IGNORE INTO post_reaction (user_id, post_id, type, create_time) "
+            + "VALUES (?, ?, ?, ?)";
+
     @Autowired
     private PostRepository postRepository;
 
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
+    @Autowired
+    private PostSearchIndex postSearchIndex;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private PostMetricsSnapshot postMetricsSnapshot;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     public Post createPost(Post post) {
         // 设置默认值
         post.setStatus("DRAFT");
@@ -29,7 +91,10 @@ public class PostService {
         post.setShares(0);
         post.setCollections(0);
 
-        return postRepository.save(post);
+        Post savedPost = postRepository.save(post);
+        postSearchIndex.indexAfterCommit(savedPost);
+        postMetricsSnapshot.upsertAfterCommit(savedPost);
+        return savedPost;
     }
 
     public Post updatePost(Post post) {
@@ -50,7 +115,11 @@ public class PostService {
         updatedPost.setAuthor(post.getAuthor());
         updatedPost.setUpdateTime(LocalDateTime.now());
 
-        return postRepository.save(updatedPost);
+        Post savedPost = postRepository.save(updatedPost);
+        postSearchIndex.indexAfterCommit(savedPost);
+        postMetricsSnapshot.upsertAfterCommit(savedPost);
+        entityCacheService.evictPost(savedPost.getId());
+        return savedPost;
     }
 
     public Post publishPost(Long postId) {
@@ -63,7 +132,13 @@ public class PostService {
         post.setStatus("PUBLISHED");
         post.setPublishTime(LocalDateTime.now());
         post.setUpdateTime(LocalDateTime.now());
-        return postRepository.save(post);
+        Post savedPost = postRepository.save(post);
+        postSearchIndex.indexAfterCommit(savedPost);
+        trendingService.trackAfterCommit(savedPost);
+        timelineService.publishAfterCommit(savedPost);
+        postMetricsSnapshot.upsertAfterCommit(savedPost);
+        entityCacheService.evictPost(postId);
+        return savedPost;
     }
 
     public Post unpublishPost(Long postId) {
@@ -75,7 +150,13 @@ public class PostService {
         Post post = existingPost.get();
         post.setStatus("UNPUBLISHED");
         post.setUpdateTime(LocalDateTime.now());
-        return postRepository.save(post);
+        postSearchIndex.removeAfterCommit(postId);
+        trendingService.untrackAfterCommit(postId);
+        Post savedPost = postRepository.save(post);
+        postMetricsSnapshot.upsertAfterCommit(savedPost);
+        timelineService.removeAfterCommit(savedPost);
+        entityCacheService.evictPost(postId);
+        return savedPost;
     }
 
     public Post deletePost(Long postId) {
@@ -87,72 +168,228 @@ public class PostService {
         Post post = existingPost.get();
         post.setStatus("DELETED");
         post.setUpdateTime(LocalDateTime.now());
-        return postRepository.save(post);
+        postSearchIndex.removeAfterCommit(postId);
+        trendingService.untrackAfterCommit(postId);
+        Post savedPost = postRepository.save(post);
+        postMetricsSnapshot.upsertAfterCommit(savedPost);
+        timelineService.removeAfterCommit(savedPost);
+        entityCacheService.evictPost(postId);
+        return savedPost;
     }
 
     public Post getPostById(Long postId) {
-        Optional<Post> existingPost = postRepository.findById(postId);
-        if (!existingPost.isPresent()) {
+        Post cachedPost = entityCacheService.getPost(postId, () -> postRepository.findById(postId).orElse(null));
+        if (cachedPost == null) {
+            throw new RuntimeException("Post not found");
+        }
+
+        // 浏览数先记在内存里批量写回，返回值叠加尚未落库的增量
+        engagementCounterService.record(postId, EngagementType.VIEW);
+        return withCurrentCounters(cachedPost);
+    }
+
+    // 点赞和收藏每人每帖只计一次，重复请求返回 false
+    public boolean likePost(Long postId, Long userId) {
+        return react(postId, userId, EngagementType.LIKE);
+    }
+
+    public void sharePost(Long postId) {
+        requirePublished(postId);
+        engagementCounterService.record(postId, EngagementType.SHARE);
+    }
+
+    public boolean collectPost(Long postId, Long userId) {
+        return react(postId, userId, EngagementType.COLLECTION);
+    }
+
+    private boolean react(Long postId, Long userId, EngagementType type) {
+        requirePublished(postId);
+        if (jdbcTemplate.update(REACT_SQL, userId, postId, type.name(), Timestamp.valueOf(LocalDateTime.now())) == 0) {
+            return false;
+        }
+        AfterCommit.run(() -> engagementCounterService.record(postId, type));
+        if (type == EngagementType.LIKE) {
+            notificationService.notifyAfterCommit(NotificationType.LIKE, userId, postId);
+        }
+        return true;
+    }
+
+    private void requirePublished(Long postId) {
+        Post post = entityCacheService.getPost(postId, () -> postRepository.findById(postId).orElse(null));
+        if (post == null || !"PUBLISHED".equals(post.getStatus())) {
             throw new RuntimeException("Post not found");
         }
+    }
 
-        postRepository.incrementViews(postId);
-        return existingPost.get();
+    public List<Long> getHotPosts(String category, int limit) {
+        return trendingService.hot(category, limit);
     }
 
-    public List<Post> searchPosts(String keyword) {
-        return postRepository.findByTitleContainingOrSummaryContainingOrKeywordsContaining(keyword, keyword, keyword);
+    public Page<Post> searchPosts(String keyword, int page, int size) {
+        PageRequest pageRequest = PageRequest.of(page, size);
+        // 索引还在预热时退回数据库查询
+        if (!postSearchIndex.isReady()) {
+            return postRepository.searchPublished(keyword, pageRequest);
+        }
+
+        PostSearchHits hits = postSearchIndex.search(keyword, (int) pageRequest.getOffset(), size);
+        Map<Long, Post> postsById = new HashMap<>();
+        for (Post post : postRepository.findAllById(hits.getPostIds())) {
+            postsById.put(post.getId(), post);
+        }
+        List<Post> posts = new ArrayList<>(hits.getPostIds().size());
+        for (Long postId : hits.getPostIds()) {
+            Post post = postsById.get(postId);
+            if (post != null) {
+                posts.add(post);
+            }
+        }
+        return new PageImpl<>(posts, pageRequest, hits.getTotal());
     }
 
-    public List<Post> getPostsByCategoryAndStatus(String category, String status) {
-        return postRepository.findByCategoryAndStatus(category, status);
+    // 按 id 倒序做 keyset 分页，多取一条判断是否还有下一页
+    public CursorPage<Post> getPosts(PostFilter filter, String cursor, int limit) {
+        Long lastId = IdCursor.decode(cursor);
+        int size = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        Pageable pageable = PageRequest.of(0, size + 1);
+        long before = lastId == null ? Long.MAX_VALUE : lastId;
+
+        List<Post> posts;
+        switch (filter.getKind()) {
+            case STATUS:
+                posts = postRepository.findByStatusAndIdLessThanOrderByIdDesc(filter.getStatus(), before, pageable);
+                break;
+            case TYPE:
+                posts = postRepository.findByTypeAndIdLessThanOrderByIdDesc(filter.getValue(), before, pageable);
+                break;
+            case TAG:
+                posts = postRepository.findByTagsContainingAndIdLessThanOrderByIdDesc(filter.getValue(), before, pageable);
+                break;
+            case AUTHOR:
+                posts = postRepository.findByAuthorAndIdLessThanOrderByIdDesc(filter.getValue(), before, pageable);
+                break;
+            case CATEGORY_AND_STATUS:
+                posts = postRepository.findByCategoryAndStatusAndIdLessThanOrderByIdDesc(filter.getValue(), filter.getStatus(), before, pageable);
+                break;
+            default:
+                posts = postRepository.findByIdLessThanOrderByIdDesc(before, pageable);
+        }
+
+        if (posts.size() <= size) {
+            return new CursorPage<>(posts, null);
+        }
+        List<Post> page = new ArrayList<>(posts.subList(0, size));
+        return new CursorPage<>(page, IdCursor.encode(page.get(size - 1).getId()));
     }
 
-    public List<Post> getPostsByTag(String tag) {
-        return postRepository.findByTagsContaining(tag);
+    // 边读边写，每写出一条就从持久化上下文里移除，内存占用与结果大小无关
+    @Transactional(readOnly = true)
+    public void streamPosts(PostFilter filter, boolean ndjson, OutputStream out) throws IOException {
+        try (Stream<Post> posts = openStream(filter);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (ndjson) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+            } else {
+                generator.writeStartArray();
+            }
+
+            int written = 0;
+            Iterator<Post> iterator = posts.iterator();
+            while (iterator.hasNext()) {
+                Post post = iterator.next();
+                generator.writeObject(post);
+                entityManager.detach(post);
+                if (++written % STREAM_FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+
+            if (ndjson) {
+                generator.writeRaw('\n');
+            } else {
+                generator.writeEndArray();
+            }
+        }
     }
 
-    public List<Post> getPostsByAuthor(String author) {
-        return postRepository.findByAuthor(author);
+    private Stream<Post> openStream(PostFilter filter) {
+        switch (filter.getKind()) {
+            case STATUS:
+                return postRepository.streamByStatusOrderByIdDesc(filter.getStatus());
+            case TYPE:
+                return postRepository.streamByTypeOrderByIdDesc(filter.getValue());
+            case TAG:
+                return postRepository.streamByTagsContainingOrderByIdDesc(filter.getValue());
+            case AUTHOR:
+                return postRepository.streamByAuthorOrderByIdDesc(filter.getValue());
+            case CATEGORY_AND_STATUS:
+                return postRepository.streamByCategoryAndStatusOrderByIdDesc(filter.getValue(), filter.getStatus());
+            default:
+                return postRepository.streamAllByOrderByIdDesc();
+        }
     }
 
-    public List<Post> getPostsByStatus(String status) {
-        return postRepository.findByStatus(status);
+    public List<Long> sortPosts(Collection<Long> postIds, List<PostSortOrder> orders) {
+        return postMetricsSnapshot.sort(postIds, orders);
     }
 
-    public List<Post> getPostsByType(String type) {
-        return postRepository.findByType(type);
+    public List<Long> sortPostsByViews(Set<Long> postIds) {
+        return sortPosts(postIds, List.of(PostSortOrder.desc(PostSortKey.VIEWS)));
     }
 
-    public Set<Long> sortPostsByViews(Set<Long> postIds) {
-        return postRepository.sortPostsByViews(postIds);
+    public List<Long> sortPostsByLikes(Set<Long> postIds) {
+        return sortPosts(postIds, List.of(PostSortOrder.desc(PostSortKey.LIKES)));
     }
 
-    public Set<Long> sortPostsByLikes(Set<Long> postIds) {
-        return postRepository.sortPostsByLikes(postIds);
+    public List<Long> sortPostsByComments(Set<Long> postIds) {
+        return sortPosts(postIds, List.of(PostSortOrder.desc(PostSortKey.COMMENTS)));
     }
 
-    public Set<Long> sortPostsByComments(Set<Long> postIds) {
-        return postRepository.sortPostsByComments(postIds);
+    public List<Long> sortPostsByShares(Set<Long> postIds) {
+        return sortPosts(postIds, List.of(PostSortOrder.desc(PostSortKey.SHARES)));
     }
 
-    public Set<Long> sortPostsByShares(Set<Long> postIds) {
-        return postRepository.sortPostsByShares(postIds);
+    public List<Long> sortPostsByCollections(Set<Long> postIds) {
+        return sortPosts(postIds, List.of(PostSortOrder.desc(PostSortKey.COLLECTIONS)));
     }
 
-    public Set<Long> sortPostsByCollections(Set<Long> postIds) {
-        return postRepository.sortPostsByCollections(postIds);
+    public List<Long> sortPostsByPublishTime(Set<Long> postIds) {
+        return sortPosts(postIds, List.of(PostSortOrder.desc(PostSortKey.PUBLISH_TIME)));
     }
 
-    public Set<Long> sortPostsByPublishTime(Set<Long> postIds) {
-        return postRepository.sortPostsByPublishTime(postIds);
+    public List<Long> sortPostsByUpdateTime(Set<Long> postIds) {
+        return sortPosts(postIds, List.of(PostSortOrder.desc(PostSortKey.UPDATE_TIME)));
     }
 
-    public Set<Long> sortPostsByUpdateTime(Set<Long> postIds) {
-        return postRepository.sortPostsByUpdateTime(postIds);
+    public List<Long> sortPostsByCreateTime(Set<Long> postIds) {
+        return sortPosts(postIds, List.of(PostSortOrder.desc(PostSortKey.CREATE_TIME)));
     }
 
-    public Set<Long> sortPostsByCreateTime(Set<Long> postIds) {
-        return postRepository.sortPostsByCreateTime(postIds);
+    // 缓存里的帖子是共享的，复制一份再覆盖计数；计数只取一个来源：优先取快照，快照里没有时读库里的计数加上未落库的增量
+    private Post withCurrentCounters(Post cachedPost) {
+        Post post = new Post();
+        BeanUtils.copyProperties(cachedPost, post);
+        long[] counters = postMetricsSnapshot.counters(post.getId());
+        if (counters == null) {
+            // 读路径不暂停计数刷新，赶上刷新时可能差一个批次
+            counters = engagementCounterService.readWithoutPausingFlush(() -> {
+                List<Object[]> rows = postRepository.findMetricsFieldsByIdIn(List.of(post.getId()));
+                long[] current = engagementCounterService.pendingDelta(post.getId());
+                if (!rows.isEmpty()) {
+                    for (int slot = 0; slot < current.length; slot++) {
+                        Object value = rows.get(0)[slot + 1];
+                        current[slot] += value == null ? 0 : ((Number) value).longValue();
+                    }
+                }
+                return current;
+            });
+        }
+        post.setViews((int) counters[EngagementType.VIEW.ordinal()]);
+        post.setLikes((int) counters[EngagementType.LIKE.ordinal()]);
+        post.setComments((int) counters[EngagementType.COMMENT.ordinal()]);
+        post.setShares((int) counters[EngagementType.SHARE.ordinal()]);
+        post.setCollections((int) counters[EngagementType.COLLECTION.ordinal()]);
+        return post;
     }
-}
\ No newline at end of file
+}
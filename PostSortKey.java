@@ -0,0 +1,17 @@
+package com.klpbbs.service;
+
+// 前五个计数键与 EngagementType 的顺序一致
+public enum PostSortKey {
+    VIEWS,
+    LIKES,
+    COMMENTS,
+    SHARES,
+    COLLECTIONS,
+    PUBLISH_TIME,
+    UPDATE_TIME,
+    CREATE_TIME;
+
+    public static PostSortKey fromName(String name) {
+        return valueOf(name.trim().replace('-', '_').toUpperCase());
+    }
+}
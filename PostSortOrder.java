@@ -0,0 +1,45 @@
+package com.klpbbs.service;
+
+// 排序条件，格式为 "views:desc"，方向省略时按降序
+public final class PostSortOrder {
+
+    private final PostSortKey key;
+    private final boolean descending;
+
+    private PostSortOrder(PostSortKey key, boolean descending) {
+        this.key = key;
+        this.descending = descending;
+    }
+
+    public static PostSortOrder desc(PostSortKey key) {
+        return new PostSortOrder(key, true);
+    }
+
+    public static PostSortOrder asc(PostSortKey key) {
+        return new PostSortOrder(key, false);
+    }
+
+    public static PostSortOrder parse(String text) {
+        String[] parts = text.split(":", 2);
+        try {
+            PostSortKey key = PostSortKey.fromName(parts[0]);
+            if (parts.length == 1 || parts[1].trim().equalsIgnoreCase("desc")) {
+                return desc(key);
+            }
+            if (parts[1].trim().equalsIgnoreCase("asc")) {
+                return asc(key);
+            }
+        } catch (IllegalArgumentException e) {
+            // 落到下面统一报错
+        }
+        throw new RuntimeException("Invalid sort: " + text);
+    }
+
+    public PostSortKey getKey() {
+        return key;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+}
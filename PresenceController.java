@@ -0,0 +1,46 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.service.AuthService;
+import com.klpbbs.service.PresenceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/presence")
+public class PresenceController {
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private AuthService authService;
+
+    @PostMapping("/heartbeat")
+    public ResponseEntity<?> heartbeat(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        presenceService.heartbeat(userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // 返回传入的用户中在线的那些
+    @GetMapping
+    public ResponseEntity<?> getOnlineUsers(@RequestParam List<Long> userIds) {
+        if (userIds.size() > 1000) {
+            return ResponseEntity.badRequest().body("Too many user ids");
+        }
+        return ResponseEntity.ok(presenceService.onlineAmong(userIds));
+    }
+
+    @GetMapping("/count")
+    public ResponseEntity<?> getOnlineCount() {
+        return ResponseEntity.ok(presenceService.onlineCount());
+    }
+}
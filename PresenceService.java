@@ -0,0 +1,173 @@
+package com.klpbbs.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 在线状态只存在内存里：心跳刷新截止时间，时间轮到期后下线，在线用户用位图表示，批量查询不查库
+@Service
+public class PresenceService {
+
+    // 主动下线后的截止时间：条目仍留在时间轮里，到期时清理，期间再次心跳不会重复挂入
+    private static final long LEFT = -1;
+
+    @Value("${klpbbs.presence.timeout-seconds:120}")
+    private int timeoutSeconds;
+
+    @Value("${klpbbs.presence.tick-ms:1000}")
+    private long tickMs;
+
+    // 用户 id -> 下线的刻度；时间轮里每个用户只挂一次，到期时发现截止时间已被心跳推后就挪到新的槽里
+    private final ConcurrentHashMap<Long, Long> deadlines = new ConcurrentHashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BitSet online = new BitSet();
+    // 超出位图下标范围的 id 单独放在集合里
+    private final Set<Long> onlineBeyondBitmap = ConcurrentHashMap.newKeySet();
+
+    private ConcurrentLinkedQueue<Long>[] wheel;
+    private long timeoutTicks;
+    private volatile long currentTick;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void start() {
+        timeoutTicks = Math.max(1, TimeUnit.SECONDS.toMillis(timeoutSeconds) / tickMs);
+        wheel = new ConcurrentLinkedQueue[(int) timeoutTicks + 1];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "presence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public void heartbeat(Long userId) {
+        long deadline = currentTick + timeoutTicks;
+        deadlines.compute(userId, (id, previous) -> {
+            if (previous == null) {
+                wheel[slot(deadline)].add(id);
+            }
+            if (previous == null || previous == LEFT) {
+                setOnline(id, true);
+            }
+            return deadline;
+        });
+    }
+
+    public void leave(Long userId) {
+        deadlines.computeIfPresent(userId, (id, deadline) -> {
+            setOnline(id, false);
+            return LEFT;
+        });
+    }
+
+    public boolean isOnline(Long userId) {
+        if (!inBitmap(userId)) {
+            return onlineBeyondBitmap.contains(userId);
+        }
+        lock.readLock().lock();
+        try {
+            return online.get(userId.intValue());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 按传入顺序返回其中在线的用户
+    public List<Long> onlineAmong(Collection<Long> userIds) {
+        List<Long> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Long userId : userIds) {
+                if (userId == null) {
+                    continue;
+                }
+                if (inBitmap(userId) ? online.get(userId.intValue()) : onlineBeyondBitmap.contains(userId)) {
+                    result.add(userId);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public int onlineCount() {
+        lock.readLock().lock();
+        try {
+            return online.cardinality() + onlineBeyondBitmap.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void advance() {
+        long tick = currentTick + 1;
+        currentTick = tick;
+        ConcurrentLinkedQueue<Long> bucket = wheel[slot(tick)];
+        // 只处理本轮开始时已在槽里的条目，处理过程中挪回同一个槽的留到下一圈
+        for (int n = bucket.size(); n > 0; n--) {
+            Long userId = bucket.poll();
+            if (userId == null) {
+                break;
+            }
+            deadlines.computeIfPresent(userId, (id, deadline) -> {
+                if (deadline > tick) {
+                    wheel[slot(deadline)].add(id);
+                    return deadline;
+                }
+                setOnline(id, false);
+                return null;
+            });
+        }
+    }
+
+    private int slot(long tick) {
+        return (int) (tick % wheel.length);
+    }
+
+    private static boolean inBitmap(long userId) {
+        return userId >= 0 && userId <= Integer.MAX_VALUE;
+    }
+
+    // 用户 id 是自增主键，位图按 id 直接下标
+    private void setOnline(long userId, boolean value) {
+        if (!inBitmap(userId)) {
+            if (value) {
+                onlineBeyondBitmap.add(userId);
+            } else {
+                onlineBeyondBitmap.remove(userId);
+            }
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            online.set((int) userId, value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
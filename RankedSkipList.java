@@ -0,0 +1,161 @@
+package com.klpbbs.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// 带跨度的跳表（同 Redis zset），按分数降序、id 升序排列，插入删除和按名次定位都是 O(log n)
+// 分数是多个排序键组成的 long 数组，按字典序比较；调用方负责加锁
+public final class RankedSkipList {
+
+    private static final int MAX_LEVEL = 32;
+    private static final double PROBABILITY = 0.25;
+
+    private static final class Node {
+        final long id;
+        final long[] score;
+        final Node[] next;
+        final int[] span;
+
+        Node(long id, long[] score, int level) {
+            this.id = id;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    private final Node head = new Node(0, null, MAX_LEVEL);
+    private int level = 1;
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public void insert(long id, long[] score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && before(x.next[i], score, id)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+
+        x = new Node(id, score, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            x.next[i] = update[i].next[i];
+            update[i].next[i] = x;
+            x.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    public boolean remove(long id, long[] score) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && before(x.next[i], score, id)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        x = x.next[0];
+        if (x == null || x.id != id || compare(x.score, score) != 0) {
+            return false;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].next[i] = x.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    // 从 0 开始的名次，不存在返回 -1
+    public int rank(long id, long[] score) {
+        int traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && (before(x.next[i], score, id) || x.next[i].id == id)) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if (x != head && x.id == id) {
+                return traversed - 1;
+            }
+        }
+        return -1;
+    }
+
+    public List<Long> range(int offset, int count) {
+        List<Long> ids = new ArrayList<>(Math.max(0, Math.min(count, size - offset)));
+        if (offset < 0 || offset >= size || count <= 0) {
+            return ids;
+        }
+
+        int target = offset + 1;
+        int traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0 && traversed < target; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= target) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+        }
+        for (; x != null && ids.size() < count; x = x.next[0]) {
+            ids.add(x.id);
+        }
+        return ids;
+    }
+
+    private static boolean before(Node node, long[] score, long id) {
+        int cmp = compare(node.score, score);
+        return cmp > 0 || (cmp == 0 && node.id < id);
+    }
+
+    private static int compare(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int cmp = Long.compare(a[i], b[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static int randomLevel() {
+        int nodeLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < PROBABILITY) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+}
@@ -0,0 +1,14 @@
+package com.klpbbs.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// 标在控制器类或方法上，方法上的优先；由 PermissionInterceptor 检查
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequiresPermission {
+
+    String value();
+}
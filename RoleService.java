@@ -14,6 +14,9 @@ public class RoleService {
     @Autowired
     private RoleRepository roleRepository;
 
+    @Autowired
+    private AuthorizationService authorizationService;
+
     public void assignRoleToUser(Long userId, Long roleId) {
         Optional<User> user = roleRepository.findById(userId);
         Optional<Role> role = roleRepository.findById(roleId);
@@ -21,6 +24,7 @@ public class RoleService {
         if (user.isPresent() && role.isPresent()) {
             user.get().getRoles().add(role.get());
             roleRepository.save(user.get());
+            authorizationService.invalidateAfterCommit(userId);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.klpbbs.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+
+// 登录会话：令牌是 base64url(会话 id | 用户 id | 过期时间) + "." + HMAC-SHA256 签名
+// 校验时先验签和过期时间，再查内存会话表，撤销即从会话表删除
+@Component
+public class SessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionService.class);
+
+    private static final String HMAC = "HmacSHA256";
+    private static final int PAYLOAD_BYTES = 16 + 8 + 8;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${klpbbs.session.secret:}")
+    private String secret;
+
+    @Value("${klpbbs.session.ttl-hours:168}")
+    private long ttlHours;
+
+    @Value("${klpbbs.session.max-sessions:500000}")
+    private long maxSessions;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private SecretKeySpec key;
+    // 会话 id -> 用户 id
+    private Cache<String, Long> sessions;
+
+    @PostConstruct
+    public void init() {
+        byte[] keyBytes;
+        if (secret.isEmpty()) {
+            keyBytes = new byte[32];
+            random.nextBytes(keyBytes);
+            log.warn("klpbbs.session.secret is not set, sessions will not survive a restart");
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        key = new SecretKeySpec(keyBytes, HMAC);
+        sessions = Caffeine.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfterWrite(Duration.ofHours(ttlHours))
+                .build();
+    }
+
+    public SessionToken issue(Long userId) {
+        byte[] sessionId = new byte[16];
+        random.nextBytes(sessionId);
+        Instant expiresAt = Instant.now().plus(Duration.ofHours(ttlHours));
+
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+                .put(sessionId)
+                .putLong(userId)
+                .putLong(expiresAt.getEpochSecond())
+                .array();
+        sessions.put(ENCODER.encodeToString(sessionId), userId);
+        String token = ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+        return new SessionToken(token, userId, expiresAt);
+    }
+
+    // 有效时返回用户 id，否则返回 null
+    public Long authenticate(String token) {
+        byte[] payload = verify(token);
+        if (payload == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        byte[] sessionId = new byte[16];
+        buffer.get(sessionId);
+        long userId = buffer.getLong();
+        if (buffer.getLong() < Instant.now().getEpochSecond()) {
+            return null;
+        }
+        Long stored = sessions.getIfPresent(ENCODER.encodeToString(sessionId));
+        return stored != null && stored == userId ? stored : null;
+    }
+
+    public void revoke(String token) {
+        byte[] payload = verify(token);
+        if (payload != null) {
+            sessions.invalidate(ENCODER.encodeToString(Arrays.copyOf(payload, 16)));
+        }
+    }
+
+    // 重置密码后让该用户所有已登录的会话失效
+    public void revokeAll(Long userId) {
+        sessions.asMap().values().removeIf(userId::equals);
+    }
+
+    private byte[] verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        try {
+            byte[] payload = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (payload.length != PAYLOAD_BYTES || !MessageDigest.isEqual(signature, sign(payload))) {
+                return null;
+            }
+            return payload;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.klpbbs.service;
+
+import java.time.Instant;
+
+public class SessionToken {
+
+    private final String token;
+    private final Long userId;
+    private final Instant expiresAt;
+
+    public SessionToken(String token, Long userId, Instant expiresAt) {
+        this.token = token;
+        this.userId = userId;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
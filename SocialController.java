@@ -0,0 +1,75 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.service.AuthService;
+import com.klpbbs.service.SocialGraphService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/social")
+public class SocialController {
+
+    @Autowired
+    private SocialGraphService socialGraphService;
+
+    @Autowired
+    private AuthService authService;
+
+    @PostMapping("/follow/{userId}")
+    public ResponseEntity<?> follow(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization, @PathVariable Long userId) {
+        Long followerId = authService.authenticate(BearerTokens.of(authorization));
+        if (followerId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(socialGraphService.follow(followerId, userId));
+    }
+
+    @DeleteMapping("/follow/{userId}")
+    public ResponseEntity<?> unfollow(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization, @PathVariable Long userId) {
+        Long followerId = authService.authenticate(BearerTokens.of(authorization));
+        if (followerId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(socialGraphService.unfollow(followerId, userId));
+    }
+
+    @GetMapping("/{followerId}/following/{userId}")
+    public ResponseEntity<?> isFollowing(@PathVariable Long followerId, @PathVariable Long userId) {
+        return ResponseEntity.ok(socialGraphService.isFollowing(followerId, userId));
+    }
+
+    // 分页参数 after 为上一页最后一个用户 id
+    @GetMapping("/{userId}/followers")
+    public ResponseEntity<?> getFollowers(@PathVariable Long userId,
+                                          @RequestParam(defaultValue = "0") long after,
+                                          @RequestParam(defaultValue = "50") int limit) {
+        List<Long> userIds = socialGraphService.followers(userId, after, Math.min(limit, 500));
+        return ResponseEntity.ok(userIds);
+    }
+
+    @GetMapping("/{userId}/followings")
+    public ResponseEntity<?> getFollowings(@PathVariable Long userId,
+                                           @RequestParam(defaultValue = "0") long after,
+                                           @RequestParam(defaultValue = "50") int limit) {
+        List<Long> userIds = socialGraphService.followings(userId, after, Math.min(limit, 500));
+        return ResponseEntity.ok(userIds);
+    }
+
+    @GetMapping("/{userId}/mutuals")
+    public ResponseEntity<?> getMutualFollows(@PathVariable Long userId,
+                                              @RequestParam(defaultValue = "0") long after,
+                                              @RequestParam(defaultValue = "50") int limit) {
+        List<Long> userIds = socialGraphService.mutualFollows(userId, after, Math.min(limit, 500));
+        return ResponseEntity.ok(userIds);
+    }
+
+    @GetMapping("/{userId}/counts")
+    public ResponseEntity<?> getCounts(@PathVariable Long userId) {
+        return ResponseEntity.ok(socialGraphService.counts(userId));
+    }
+}
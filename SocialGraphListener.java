@@ -0,0 +1,9 @@
+package com.klpbbs.service;
+
+// 关注关系在事务提交并写入内存图之后回调，实现不能阻塞
+public interface SocialGraphListener {
+
+    void onFollow(long followerId, long followingId);
+
+    void onUnfollow(long followerId, long followingId);
+}
@@ -0,0 +1,317 @@
+package com.klpbbs.service;
+
+import com.klpbbs.support.AfterCommit;
+import com.klpbbs.support.CompressedLongSet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+// 关注关系：user_followers 表为准，内存里每个用户一份压缩的关注列表和粉丝列表，查询不加载 User 实体
+// 关注数和粉丝数在关注/取关的同一事务里用原子 UPDATE 维护
+@Service
+public class SocialGraphService {
+
+    private static final Logger log = LoggerFactory.getLogger(SocialGraphService.class);
+
+    private static final String FOLLOW_SQL = "INSERT INTO user_followers (follower_id, following_id) SELECT ?, ? FROM DUAL "
+            + "WHERE NOT EXISTS (SELECT 1 FROM user_followers WHERE follower_id = ? AND following_id = ?)";
+    private static final String UNFOLLOW_SQL = "DELETE FROM user_followers WHERE follower_id = ? AND following_id = ?";
+    private static final String FOLLOWINGS_COUNT_SQL = "UPDATE users SET followings_count = GREATEST(COALESCE(followings_count, 0) + ?, 0), "
+            + "update_time = ? WHERE id = ?";
+    private static final String FOLLOWERS_COUNT_SQL = "UPDATE users SET followers_count = GREATEST(COALESCE(followers_count, 0) + ?, 0), "
+            + "update_time = ? WHERE id = ?";
+    private static final String WARM_SQL = "SELECT follower_id, following_id FROM user_followers ORDER BY follower_id, following_id";
+    // 预热完成前直接查库
+    private static final String IS_FOLLOWING_SQL = "SELECT COUNT(*) FROM user_followers WHERE follower_id = ? AND following_id = ?";
+    private static final String COUNTS_SQL = "SELECT COALESCE(followers_count, 0), COALESCE(followings_count, 0) FROM users WHERE id = ?";
+    private static final String FOLLOWERS_PAGE_SQL = "SELECT follower_id FROM user_followers WHERE following_id = ? AND follower_id > ? "
+            + "ORDER BY follower_id LIMIT ?";
+    private static final String FOLLOWINGS_PAGE_SQL = "SELECT following_id FROM user_followers WHERE follower_id = ? AND following_id > ? "
+            + "ORDER BY following_id LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    // 监听者（如 timeline）本身依赖这个服务，用 ObjectProvider 在回调时再取，避免循环依赖
+    @Autowired
+    private ObjectProvider<SocialGraphListener> listeners;
+
+    @Value("${klpbbs.social.warm-fetch-size:10000}")
+    private int warmFetchSize;
+
+    @Value("${klpbbs.social.warm-retry-seconds:30}")
+    private long warmRetrySeconds;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, CompressedLongSet> followings = new HashMap<>();
+    private final Map<Long, CompressedLongSet> followers = new HashMap<>();
+    // 预热期间取关的关系，follower -> following；合并加载结果时跳过，预热完成后清空
+    private final Map<Long, Set<Long>> unfollowedDuringWarm = new HashMap<>();
+
+    private volatile boolean ready;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "social-graph");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::warm);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // 返回 false 表示已经关注过
+    @Transactional
+    public boolean follow(Long followerId, Long followingId) {
+        if (followerId.equals(followingId)) {
+            throw new RuntimeException("Cannot follow yourself");
+        }
+        if (jdbcTemplate.update(FOLLOW_SQL, followerId, followingId, followerId, followingId) == 0) {
+            return false;
+        }
+        updateCounts(followerId, followingId, 1);
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                set(followings, followerId).add(followingId);
+                set(followers, followingId).add(followerId);
+                if (!ready) {
+                    Set<Long> removed = unfollowedDuringWarm.get(followerId);
+                    if (removed != null && removed.remove(followingId) && removed.isEmpty()) {
+                        unfollowedDuringWarm.remove(followerId);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            listeners.orderedStream().forEach(listener -> listener.onFollow(followerId, followingId));
+        });
+        return true;
+    }
+
+    // 返回 false 表示本来就没有关注
+    @Transactional
+    public boolean unfollow(Long followerId, Long followingId) {
+        if (jdbcTemplate.update(UNFOLLOW_SQL, followerId, followingId) == 0) {
+            return false;
+        }
+        updateCounts(followerId, followingId, -1);
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                removeFrom(followings, followerId, followingId);
+                removeFrom(followers, followingId, followerId);
+                if (!ready) {
+                    unfollowedDuringWarm.computeIfAbsent(followerId, id -> new HashSet<>()).add(followingId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            listeners.orderedStream().forEach(listener -> listener.onUnfollow(followerId, followingId));
+        });
+        return true;
+    }
+
+    public boolean isFollowing(Long followerId, Long followingId) {
+        if (!ready) {
+            Integer count = jdbcTemplate.queryForObject(IS_FOLLOWING_SQL, Integer.class, followerId, followingId);
+            return count != null && count > 0;
+        }
+        lock.readLock().lock();
+        try {
+            CompressedLongSet set = followings.get(followerId);
+            return set != null && set.contains(followingId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public FollowCounts counts(Long userId) {
+        if (!ready) {
+            List<FollowCounts> rows = jdbcTemplate.query(COUNTS_SQL,
+                    (rs, rowNum) -> new FollowCounts(rs.getInt(1), rs.getInt(2)), userId);
+            return rows.isEmpty() ? new FollowCounts(0, 0) : rows.get(0);
+        }
+        lock.readLock().lock();
+        try {
+            return new FollowCounts(size(followers, userId), size(followings, userId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 按用户 id 升序分页，after 为上一页最后一个 id
+    public List<Long> followers(Long userId, long after, int limit) {
+        if (!ready) {
+            return jdbcTemplate.queryForList(FOLLOWERS_PAGE_SQL, Long.class, userId, after, limit);
+        }
+        return page(followers, userId, after, limit);
+    }
+
+    public List<Long> followings(Long userId, long after, int limit) {
+        if (!ready) {
+            return jdbcTemplate.queryForList(FOLLOWINGS_PAGE_SQL, Long.class, userId, after, limit);
+        }
+        return page(followings, userId, after, limit);
+    }
+
+    // 互相关注的用户：遍历较小的一侧，在另一侧里查找
+    public List<Long> mutualFollows(Long userId, long after, int limit) {
+        List<Long> result = new ArrayList<>(Math.min(limit, 100));
+        lock.readLock().lock();
+        try {
+            CompressedLongSet out = followings.get(userId);
+            CompressedLongSet in = followers.get(userId);
+            if (out == null || in == null || limit <= 0) {
+                return result;
+            }
+            CompressedLongSet smaller = out.size() <= in.size() ? out : in;
+            CompressedLongSet larger = smaller == out ? in : out;
+            smaller.forEachAfter(after, id -> {
+                if (larger.contains(id)) {
+                    result.add(id);
+                }
+                return result.size() < limit;
+            });
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 遍历粉丝，供 timeline 之类的扇出使用，visitor 返回 false 时停止
+    public void forEachFollower(Long userId, LongPredicate visitor) {
+        lock.readLock().lock();
+        try {
+            CompressedLongSet set = followers.get(userId);
+            if (set != null) {
+                set.forEachAfter(Long.MIN_VALUE, visitor);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void updateCounts(Long followerId, Long followingId, int delta) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(FOLLOWINGS_COUNT_SQL, delta, now, followerId);
+        jdbcTemplate.update(FOLLOWERS_COUNT_SQL, delta, now, followingId);
+        entityCacheService.evictUserId(followerId);
+        entityCacheService.evictUserId(followingId);
+        leaderboardService.refreshAfterCommit(followerId);
+        leaderboardService.refreshAfterCommit(followingId);
+    }
+
+    private void warm() {
+        try {
+            // 按 follower_id, following_id 排序读取，两侧的集合都是升序追加
+            Map<Long, CompressedLongSet> loadedFollowings = new HashMap<>();
+            Map<Long, CompressedLongSet> loadedFollowers = new HashMap<>();
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(WARM_SQL);
+                statement.setFetchSize(warmFetchSize);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                long followerId = rs.getLong(1);
+                long followingId = rs.getLong(2);
+                set(loadedFollowings, followerId).add(followingId);
+                set(loadedFollowers, followingId).add(followerId);
+            });
+
+            // 预热期间提交的关注关系已经写进内存，合并时补上加载的部分，跳过期间已经取关的
+            lock.writeLock().lock();
+            try {
+                loadedFollowings.forEach((userId, set) -> set.forEachAfter(Long.MIN_VALUE, id -> {
+                    if (!isUnfollowedDuringWarm(userId, id)) {
+                        set(followings, userId).add(id);
+                    }
+                    return true;
+                }));
+                loadedFollowers.forEach((userId, set) -> set.forEachAfter(Long.MIN_VALUE, id -> {
+                    if (!isUnfollowedDuringWarm(id, userId)) {
+                        set(followers, userId).add(id);
+                    }
+                    return true;
+                }));
+                unfollowedDuringWarm.clear();
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Social graph warmed with {} users following others", followings.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to warm social graph, retrying in {}s", warmRetrySeconds, e);
+            scheduler.schedule(this::warm, warmRetrySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private boolean isUnfollowedDuringWarm(long followerId, long followingId) {
+        Set<Long> removed = unfollowedDuringWarm.get(followerId);
+        return removed != null && removed.contains(followingId);
+    }
+
+    private static int size(Map<Long, CompressedLongSet> sets, Long userId) {
+        CompressedLongSet set = sets.get(userId);
+        return set == null ? 0 : set.size();
+    }
+
+    private List<Long> page(Map<Long, CompressedLongSet> sets, Long userId, long after, int limit) {
+        lock.readLock().lock();
+        try {
+            CompressedLongSet set = sets.get(userId);
+            return set == null ? new ArrayList<>() : set.page(after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static CompressedLongSet set(Map<Long, CompressedLongSet> sets, long userId) {
+        return sets.computeIfAbsent(userId, id -> new CompressedLongSet());
+    }
+
+    private static void removeFrom(Map<Long, CompressedLongSet> sets, long userId, long value) {
+        CompressedLongSet set = sets.get(userId);
+        if (set != null && set.remove(value) && set.isEmpty()) {
+            sets.remove(userId);
+        }
+    }
+}
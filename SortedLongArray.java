@@ -0,0 +1,93 @@
+package com.klpbbs.support;
+
+import java.util.Arrays;
+
+// 有序去重的 long 数组，按 id 递增追加时是 O(1)，调用方负责加锁
+public final class SortedLongArray {
+
+    private long[] values;
+    private int size;
+
+    public SortedLongArray() {
+        this(4);
+    }
+
+    public SortedLongArray(int capacity) {
+        values = new long[Math.max(capacity, 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long get(int index) {
+        return values[index];
+    }
+
+    public boolean contains(long value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    public boolean add(long value) {
+        if (size > 0 && values[size - 1] < value) {
+            ensureCapacity();
+            values[size++] = value;
+            return true;
+        }
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        ensureCapacity();
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = value;
+        size++;
+        return true;
+    }
+
+    public boolean remove(long value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    // 两个有序数组求交集，小数组在大数组里二分
+    public SortedLongArray intersect(SortedLongArray other) {
+        SortedLongArray small = size <= other.size ? this : other;
+        SortedLongArray large = small == this ? other : this;
+        SortedLongArray result = new SortedLongArray(small.size);
+        int from = 0;
+        for (int i = 0; i < small.size && from < large.size; i++) {
+            int index = Arrays.binarySearch(large.values, from, large.size, small.values[i]);
+            if (index >= 0) {
+                result.values[result.size++] = small.values[i];
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+        }
+        return result;
+    }
+
+    public SortedLongArray copy() {
+        SortedLongArray copy = new SortedLongArray(size);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    private void ensureCapacity() {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        }
+    }
+}
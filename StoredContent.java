@@ -0,0 +1,34 @@
+package com.klpbbs.storage;
+
+import java.nio.file.Path;
+
+public class StoredContent {
+
+    private final String sha256;
+    private final long size;
+    private final Path path;
+    private final boolean deduplicated;
+
+    public StoredContent(String sha256, long size, Path path, boolean deduplicated) {
+        this.sha256 = sha256;
+        this.size = size;
+        this.path = path;
+        this.deduplicated = deduplicated;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean isDeduplicated() {
+        return deduplicated;
+    }
+}
@@ -0,0 +1,34 @@
+package com.klpbbs.controller;
+
+import com.klpbbs.service.AuthService;
+import com.klpbbs.service.TimelineService;
+import com.klpbbs.support.CursorPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/timeline")
+public class TimelineController {
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private AuthService authService;
+
+    // 返回关注的人发布的帖子 id，从新到旧
+    @GetMapping
+    public ResponseEntity<?> getTimeline(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        CursorPage<Long> page = timelineService.timeline(userId, cursor, limit);
+        return ResponseEntity.ok(page);
+    }
+}
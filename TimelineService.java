@@ -0,0 +1,343 @@
+package com.klpbbs.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.klpbbs.entity.Post;
+import com.klpbbs.repository.PostRepository;
+import com.klpbbs.repository.UserRepository;
+import com.klpbbs.support.AfterCommit;
+import com.klpbbs.support.BoundedIdRing;
+import com.klpbbs.support.CursorPage;
+import com.klpbbs.support.IdCursor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 关注的人的动态：普通作者发帖时推到每个粉丝的有界缓冲区里，粉丝数超过阈值的作者只保存自己的最近帖子，读的时候再合并
+// 缓冲区只为最近读过的用户保留，重启或被淘汰后第一次读取时从数据库重建，翻到缓冲区以外的部分直接查数据库
+@Service
+public class TimelineService implements SocialGraphListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TimelineService.class);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SocialGraphService socialGraphService;
+
+    @Value("${klpbbs.timeline.capacity:500}")
+    private int capacity;
+
+    @Value("${klpbbs.timeline.max-cached-users:100000}")
+    private long maxCachedUsers;
+
+    @Value("${klpbbs.timeline.idle-minutes:60}")
+    private long idleMinutes;
+
+    @Value("${klpbbs.timeline.pull-threshold:5000}")
+    private int pullThreshold;
+
+    @Value("${klpbbs.timeline.rebuild-batch:1000}")
+    private int rebuildBatch;
+
+    @Value("${klpbbs.timeline.max-cached-authors:10000}")
+    private long maxCachedAuthors;
+
+    // 用户 id -> 推送给他的帖子
+    private Cache<Long, BoundedIdRing> timelines;
+    // 拉模式的作者 id，作者一旦进入拉模式就保持到重启；这里只存 id，最近帖子在 authorPosts 里按需加载
+    private final Set<Long> pulledAuthors = ConcurrentHashMap.newKeySet();
+    // 拉模式作者 id -> 自己最近的帖子，长时间没人读的会被淘汰
+    private Cache<Long, BoundedIdRing> authorPosts;
+
+    private ExecutorService fanout;
+
+    @PostConstruct
+    public void start() {
+        timelines = Caffeine.newBuilder()
+                .maximumSize(maxCachedUsers)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .build();
+        authorPosts = Caffeine.newBuilder()
+                .maximumSize(maxCachedAuthors)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .build();
+        fanout = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "timeline-fanout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        fanout.shutdownNow();
+    }
+
+    public void publishAfterCommit(Post post) {
+        if (post.getPublishTime() == null || post.getAuthor() == null) {
+            return;
+        }
+        String author = post.getAuthor();
+        Long postId = post.getId();
+        AfterCommit.run(() -> fanout.execute(() -> fanOutQuietly(author, postId)));
+    }
+
+    // 撤回或删除的帖子从作者和粉丝已缓存的缓冲区里移除，与扇出走同一个线程，保证先推后删
+    public void removeAfterCommit(Post post) {
+        if (post.getAuthor() == null) {
+            return;
+        }
+        String author = post.getAuthor();
+        Long postId = post.getId();
+        AfterCommit.run(() -> fanout.execute(() -> removeQuietly(author, postId)));
+    }
+
+    public CursorPage<Long> timeline(Long userId, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Long before = IdCursor.decode(cursor);
+        long beforeId = before == null ? Long.MAX_VALUE : before;
+
+        List<long[]> sources = new ArrayList<>();
+        BoundedIdRing own = timelines.get(userId, this::rebuild);
+        sources.add(own.snapshot());
+        long floor = own.floor();
+        for (Long authorId : followedPulledAuthors(userId)) {
+            BoundedIdRing posts = authorPosts.get(authorId, this::loadAuthor);
+            sources.add(posts.snapshot());
+            floor = Math.max(floor, posts.floor());
+        }
+
+        // 缓冲区只对不小于 floor 的 id 是完整的，不够一页时剩下的从数据库补
+        List<Long> postIds = merge(sources, beforeId, floor, size + 1);
+        if (postIds.size() <= size && floor > 0) {
+            long from = postIds.isEmpty() ? Math.min(beforeId, floor) : postIds.get(postIds.size() - 1);
+            postIds.addAll(load(userId, from, size + 1 - postIds.size()));
+        }
+
+        String nextCursor = null;
+        if (postIds.size() > size) {
+            postIds = new ArrayList<>(postIds.subList(0, size));
+            nextCursor = IdCursor.encode(postIds.get(size - 1));
+        }
+        return new CursorPage<>(postIds, nextCursor);
+    }
+
+    // 关注关系变化后丢掉缓冲区，下次读取时按新的关注列表重建
+    @Override
+    public void onFollow(long followerId, long followingId) {
+        timelines.invalidate(followerId);
+    }
+
+    @Override
+    public void onUnfollow(long followerId, long followingId) {
+        timelines.invalidate(followerId);
+    }
+
+    private void fanOut(String author, Long postId) {
+        Long authorId = userRepository.findIdByUsername(author).orElse(null);
+        if (authorId == null) {
+            return;
+        }
+        if (pulledAuthors.contains(authorId) || socialGraphService.counts(authorId).getFollowers() >= pullThreshold) {
+            pulledAuthors.add(authorId);
+            // 没缓存的作者下次读取时从数据库加载，已经包含这条
+            authorPosts.asMap().computeIfPresent(authorId, (id, ring) -> {
+                ring.push(postId);
+                return ring;
+            });
+            return;
+        }
+
+        // computeIfPresent 会等正在进行的重建结束，重建时没查到的帖子不会漏掉
+        Map<Long, BoundedIdRing> cached = timelines.asMap();
+        socialGraphService.forEachFollower(authorId, followerId -> {
+            cached.computeIfPresent(followerId, (id, ring) -> {
+                ring.push(postId);
+                return ring;
+            });
+            return true;
+        });
+    }
+
+    // 作者可能是在进入拉模式之前推送的，两边都要删
+    private void remove(String author, Long postId) {
+        Long authorId = userRepository.findIdByUsername(author).orElse(null);
+        if (authorId == null) {
+            return;
+        }
+        authorPosts.asMap().computeIfPresent(authorId, (id, ring) -> {
+            ring.remove(postId);
+            return ring;
+        });
+        Map<Long, BoundedIdRing> cached = timelines.asMap();
+        socialGraphService.forEachFollower(authorId, followerId -> {
+            cached.computeIfPresent(followerId, (id, ring) -> {
+                ring.remove(postId);
+                return ring;
+            });
+            return true;
+        });
+    }
+
+    // 用户关注的拉模式作者：从拉模式作者和关注列表中较小的一侧遍历
+    private List<Long> followedPulledAuthors(Long userId) {
+        List<Long> result = new ArrayList<>();
+        if (pulledAuthors.isEmpty()) {
+            return result;
+        }
+        if (pulledAuthors.size() <= socialGraphService.counts(userId).getFollowings()) {
+            for (Long authorId : pulledAuthors) {
+                if (socialGraphService.isFollowing(userId, authorId)) {
+                    result.add(authorId);
+                }
+            }
+            return result;
+        }
+        long after = 0;
+        while (true) {
+            List<Long> followingIds = socialGraphService.followings(userId, after, rebuildBatch);
+            for (Long followingId : followingIds) {
+                if (pulledAuthors.contains(followingId)) {
+                    result.add(followingId);
+                }
+            }
+            if (followingIds.size() < rebuildBatch) {
+                return result;
+            }
+            after = followingIds.get(followingIds.size() - 1);
+        }
+    }
+
+    private BoundedIdRing rebuild(Long userId) {
+        // 按关注列表分批查询，每批取最新的 capacity 条再合并
+        List<long[]> batches = new ArrayList<>();
+        boolean complete = true;
+        long after = 0;
+        while (true) {
+            List<Long> followingIds = socialGraphService.followings(userId, after, rebuildBatch);
+            if (followingIds.isEmpty()) {
+                break;
+            }
+            after = followingIds.get(followingIds.size() - 1);
+            List<String> authors = userRepository.findUsernamesByIdIn(followingIds);
+            if (!authors.isEmpty()) {
+                List<Long> postIds = postRepository.findPublishedIdsByAuthorIn(authors, Long.MAX_VALUE, PageRequest.of(0, capacity));
+                complete &= postIds.size() < capacity;
+                batches.add(toArray(postIds));
+            }
+            if (followingIds.size() < rebuildBatch) {
+                break;
+            }
+        }
+        List<Long> merged = merge(batches, Long.MAX_VALUE, 0, capacity + 1);
+        return BoundedIdRing.of(toArray(merged), merged.size(), capacity, complete);
+    }
+
+    private BoundedIdRing loadAuthor(Long authorId) {
+        List<String> authors = userRepository.findUsernamesByIdIn(Collections.singletonList(authorId));
+        if (authors.isEmpty()) {
+            return new BoundedIdRing(capacity);
+        }
+        String author = authors.get(0);
+        List<Long> postIds = postRepository.findPublishedIdsByAuthorIn(Collections.singletonList(author), Long.MAX_VALUE,
+                PageRequest.of(0, capacity));
+        return BoundedIdRing.of(toArray(postIds), postIds.size(), capacity, postIds.size() < capacity);
+    }
+
+    // 缓冲区以外的部分：按关注列表分批查询后合并
+    private List<Long> load(Long userId, long beforeId, int limit) {
+        List<long[]> batches = new ArrayList<>();
+        long after = 0;
+        while (true) {
+            List<Long> followingIds = socialGraphService.followings(userId, after, rebuildBatch);
+            if (followingIds.isEmpty()) {
+                break;
+            }
+            after = followingIds.get(followingIds.size() - 1);
+            List<String> authors = userRepository.findUsernamesByIdIn(followingIds);
+            if (!authors.isEmpty()) {
+                batches.add(toArray(postRepository.findPublishedIdsByAuthorIn(authors, beforeId, PageRequest.of(0, limit))));
+            }
+            if (followingIds.size() < rebuildBatch) {
+                break;
+            }
+        }
+        return merge(batches, beforeId, 0, limit);
+    }
+
+    // 多路合并从大到小排列的 id 并去重，只取 floor <= id < beforeId 的部分
+    private static List<Long> merge(List<long[]> sources, long beforeId, long floor, int limit) {
+        int[] positions = new int[sources.size()];
+        List<Long> result = new ArrayList<>(Math.min(limit, 128));
+        long last = Long.MAX_VALUE;
+        while (result.size() < limit) {
+            int best = -1;
+            long bestId = Long.MIN_VALUE;
+            for (int i = 0; i < sources.size(); i++) {
+                long[] source = sources.get(i);
+                while (positions[i] < source.length && source[positions[i]] >= beforeId) {
+                    positions[i]++;
+                }
+                if (positions[i] < source.length && source[positions[i]] > bestId) {
+                    best = i;
+                    bestId = source[positions[i]];
+                }
+            }
+            if (best < 0 || bestId < floor) {
+                break;
+            }
+            positions[best]++;
+            if (bestId != last) {
+                result.add(bestId);
+                last = bestId;
+            }
+        }
+        return result;
+    }
+
+    private static long[] toArray(List<Long> ids) {
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    private void fanOutQuietly(String author, Long postId) {
+        try {
+            fanOut(author, postId);
+        } catch (RuntimeException e) {
+            log.error("Failed to fan out post {}", postId, e);
+        }
+    }
+
+    private void removeQuietly(String author, Long postId) {
+        try {
+            remove(author, postId);
+        } catch (RuntimeException e) {
+            log.error("Failed to remove post {} from timelines", postId, e);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.klpbbs.service;
+
+import com.klpbbs.entity.Post;
+import com.klpbbs.repository.PostRepository;
+import com.klpbbs.support.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 热门帖子：Reddit 式热度分 log10(互动加权和) + 发布时间 / 45000，
+// 分数本身不随时间变化，新帖天然排在旧帖前面，所以每个分类只需维护一个有界的有序集合
+@Service
+public class TrendingService implements EngagementListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TrendingService.class);
+
+    private static final String ALL = "";
+    private static final long EPOCH_SECONDS = 1134028003L;
+    private static final double DECAY_SECONDS = 45000d;
+
+    // 按 EngagementType 顺序的权重
+    private static final double[] WEIGHTS = {0.05, 1, 2, 3, 2};
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingDouble((Entry e) -> e.score).reversed()
+            .thenComparing(Comparator.comparingLong((Entry e) -> e.postId).reversed());
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Value("${klpbbs.trending.top-k:200}")
+    private int topK;
+
+    @Value("${klpbbs.trending.window-hours:72}")
+    private long windowHours;
+
+    @Value("${klpbbs.trending.rescore-interval-ms:1000}")
+    private long rescoreIntervalMs;
+
+    @Value("${klpbbs.trending.compact-interval-ms:600000}")
+    private long compactIntervalMs;
+
+    // 时间窗口内所有已发布帖子的计数，请求线程无锁累加
+    private final ConcurrentHashMap<Long, Entry> tracked = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    // 以下只在 scheduler 线程里访问
+    private final Map<String, TreeSet<Entry>> boards = new HashMap<>();
+    private final Map<Long, Entry> placed = new HashMap<>();
+
+    // 对外发布的只读快照
+    private volatile Map<String, List<Long>> snapshots = Collections.emptyMap();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "trending");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::warm);
+        scheduler.scheduleWithFixedDelay(this::rescoreQuietly, rescoreIntervalMs, rescoreIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::compactQuietly, compactIntervalMs, compactIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public List<Long> hot(String category, int limit) {
+        List<Long> postIds = snapshots.get(category == null ? ALL : category);
+        if (postIds == null) {
+            return Collections.emptyList();
+        }
+        int size = Math.max(0, limit);
+        return postIds.size() > size ? postIds.subList(0, size) : postIds;
+    }
+
+    @Override
+    public void onEngagement(long postId, EngagementType type, int delta) {
+        Entry entry = tracked.get(postId);
+        if (entry != null) {
+            entry.counters.addAndGet(type.ordinal(), delta);
+            dirty.add(postId);
+        }
+    }
+
+    public void trackAfterCommit(Post post) {
+        if (post.getPublishTime() == null) {
+            return;
+        }
+        Entry entry = new Entry(post.getId(), post.getCategory(), post.getPublishTime().toEpochSecond(ZoneOffset.UTC));
+        entry.counters.set(EngagementType.VIEW.ordinal(), post.getViews());
+        entry.counters.set(EngagementType.LIKE.ordinal(), post.getLikes());
+        entry.counters.set(EngagementType.COMMENT.ordinal(), post.getComments());
+        entry.counters.set(EngagementType.SHARE.ordinal(), post.getShares());
+        entry.counters.set(EngagementType.COLLECTION.ordinal(), post.getCollections());
+        AfterCommit.run(() -> {
+            tracked.put(entry.postId, entry);
+            dirty.add(entry.postId);
+        });
+    }
+
+    public void untrackAfterCommit(Long postId) {
+        AfterCommit.run(() -> {
+            if (tracked.remove(postId) != null) {
+                dirty.add(postId);
+            }
+        });
+    }
+
+    private void warm() {
+        try {
+            LocalDateTime since = LocalDateTime.now().minusHours(windowHours);
+            for (Object[] row : postRepository.findTrendingFieldsPublishedAfter(since)) {
+                Entry entry = new Entry((Long) row[0], (String) row[1], ((LocalDateTime) row[2]).toEpochSecond(ZoneOffset.UTC));
+                for (int slot = 0; slot < WEIGHTS.length; slot++) {
+                    entry.counters.set(slot, row[3 + slot] == null ? 0 : ((Number) row[3 + slot]).longValue());
+                }
+                if (tracked.putIfAbsent(entry.postId, entry) == null) {
+                    dirty.add(entry.postId);
+                }
+            }
+            compact();
+            log.info("Trending boards warmed with {} posts", tracked.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to warm trending boards", e);
+        }
+    }
+
+    // 把有变化的帖子重新算分并调整在榜单里的位置
+    private void rescore() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        Set<String> changed = new HashSet<>();
+        for (Long postId : new ArrayList<>(dirty)) {
+            dirty.remove(postId);
+            Entry previous = placed.remove(postId);
+            if (previous != null) {
+                board(ALL).remove(previous);
+                board(previous.category).remove(previous);
+                changed.add(ALL);
+                changed.add(previous.category);
+            }
+
+            Entry entry = tracked.get(postId);
+            if (entry == null) {
+                continue;
+            }
+            entry.score = score(entry);
+            if (offer(board(ALL), entry) | offer(board(entry.category), entry)) {
+                placed.put(postId, entry);
+                changed.add(ALL);
+                changed.add(entry.category);
+            }
+        }
+        publish(changed);
+    }
+
+    // 丢掉超出时间窗口的帖子，用全部在窗口内的帖子重建榜单，被挤出的帖子有机会重新上榜
+    private void compact() {
+        long cutoff = LocalDateTime.now().minusHours(windowHours).toEpochSecond(ZoneOffset.UTC);
+        tracked.values().removeIf(entry -> entry.publishEpochSecond < cutoff);
+
+        dirty.clear();
+        boards.clear();
+        placed.clear();
+        for (Entry entry : tracked.values()) {
+            entry.score = score(entry);
+            if (offer(board(ALL), entry) | offer(board(entry.category), entry)) {
+                placed.put(entry.postId, entry);
+            }
+        }
+        Set<String> changed = new HashSet<>(boards.keySet());
+        changed.addAll(snapshots.keySet());
+        publish(changed);
+    }
+
+    private boolean offer(TreeSet<Entry> board, Entry entry) {
+        board.add(entry);
+        if (board.size() <= topK) {
+            return true;
+        }
+        Entry evicted = board.pollLast();
+        if (evicted != entry && !board(ALL).contains(evicted) && !board(evicted.category).contains(evicted)) {
+            placed.remove(evicted.postId);
+        }
+        return evicted != entry;
+    }
+
+    private TreeSet<Entry> board(String category) {
+        return boards.computeIfAbsent(category == null ? ALL : category, c -> new TreeSet<>(ORDER));
+    }
+
+    private void publish(Set<String> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Map<String, List<Long>> next = new HashMap<>(snapshots);
+        for (String category : changed) {
+            TreeSet<Entry> board = boards.get(category);
+            if (board == null || board.isEmpty()) {
+                next.remove(category);
+                continue;
+            }
+            List<Long> postIds = new ArrayList<>(board.size());
+            for (Entry entry : board) {
+                postIds.add(entry.postId);
+            }
+            next.put(category, Collections.unmodifiableList(postIds));
+        }
+        snapshots = next;
+    }
+
+    private static double score(Entry entry) {
+        double weighted = 0;
+        for (int slot = 0; slot < WEIGHTS.length; slot++) {
+            weighted += WEIGHTS[slot] * entry.counters.get(slot);
+        }
+        return Math.log10(Math.max(1, weighted)) + (entry.publishEpochSecond - EPOCH_SECONDS) / DECAY_SECONDS;
+    }
+
+    private void rescoreQuietly() {
+        try {
+            rescore();
+        } catch (RuntimeException e) {
+            log.error("Failed to rescore trending boards", e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.error("Failed to compact trending boards", e);
+        }
+    }
+
+    private static final class Entry {
+        final long postId;
+        final String category;
+        final long publishEpochSecond;
+        final AtomicLongArray counters = new AtomicLongArray(WEIGHTS.length);
+        // 只在 scheduler 线程里读写，在榜单里时不能修改
+        double score;
+
+        Entry(long postId, String category, long publishEpochSecond) {
+            this.postId = postId;
+            this.category = category == null ? ALL : category;
+            this.publishEpochSecond = publishEpochSecond;
+        }
+    }
+}
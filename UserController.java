@@ -1,8 +1,13 @@
 package com.klpbbs.controller;
 
 import com.klpbbs.model.User;
+import com.klpbbs.service.AuthService;
 import com.klpbbs.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -12,8 +17,31 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AuthService authService;
+
     @PostMapping("/register")
     public User registerUser(@RequestBody User user) {
         return userService.registerUser(user.getUsername(), user.getEmail(), user.getPassword());
     }
+
+    @PutMapping("/me/profile")
+    public ResponseEntity<?> updateProfile(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization,
+                                           @RequestParam(required = false) String nickname,
+                                           @RequestParam(required = false) String email,
+                                           @RequestParam(required = false) String phone) {
+        Long userId = authService.authenticate(BearerTokens.of(authorization));
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        // 先查重；并发下两人同时抢同一个邮箱时由唯一约束兜底
+        try {
+            if (!userService.updateProfile(userId, nickname, email, phone)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Email or phone already in use");
+            }
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Email or phone already in use");
+        }
+        return ResponseEntity.noContent().build();
+    }
 }
\ No newline at end of file
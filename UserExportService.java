@@ -0,0 +1,162 @@
+package com.klpbbs.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klpbbs.support.CursorPage;
+import com.klpbbs.support.IdCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+// 管理后台用户导出：按 id 分块读取标量列，直接写 gzip 压缩的 CSV 或 NDJSON
+@Service
+public class UserExportService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final String[] COLUMNS = {
+            "id", "username", "nickname", "email", "phone", "status", "level", "points", "reputation",
+            "followersCount", "followingsCount", "postsCount", "commentsCount", "createTime", "lastLoginTime"
+    };
+
+    private static final String CHUNK_QUERY = "SELECT u.id, u.username, u.nickname, u.email, u.phone, u.status, "
+            + "u.level, u.points, u.reputation, u.followersCount, u.followingsCount, u.postsCount, u.commentsCount, "
+            + "u.createTime, u.lastLoginTime FROM User u WHERE u.id > :lastId ORDER BY u.id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${klpbbs.export.chunk-size:2000}")
+    private int chunkSize;
+
+    @Transactional(readOnly = true)
+    public void exportUsers(boolean csv, OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+        if (csv) {
+            writeCsv(gzip);
+        } else {
+            writeNdjson(gzip);
+        }
+        gzip.finish();
+    }
+
+    // 管理后台的用户列表，与导出相同的列，按 id 升序做 keyset 分页，多取一条判断是否还有下一页
+    @Transactional(readOnly = true)
+    public CursorPage<Map<String, Object>> listUsers(String cursor, int limit) {
+        Long lastId = IdCursor.decode(cursor);
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Object[]> rows = query(lastId == null ? 0 : lastId, size + 1);
+        List<Map<String, Object>> users = new ArrayList<>(Math.min(rows.size(), size));
+        for (Object[] row : rows.subList(0, Math.min(rows.size(), size))) {
+            Map<String, Object> user = new LinkedHashMap<>();
+            for (int i = 0; i < row.length; i++) {
+                user.put(COLUMNS[i], row[i]);
+            }
+            users.add(user);
+        }
+        if (rows.size() <= size) {
+            return new CursorPage<>(users, null);
+        }
+        return new CursorPage<>(users, IdCursor.encode((Long) rows.get(size - 1)[0]));
+    }
+
+    private void writeCsv(OutputStream out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(String.join(",", COLUMNS));
+        writer.write('\n');
+
+        long lastId = 0;
+        List<Object[]> rows;
+        do {
+            rows = nextChunk(lastId);
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(csvValue(row[i]));
+                }
+                writer.write('\n');
+                lastId = (Long) row[0];
+            }
+            writer.flush();
+        } while (rows.size() == chunkSize);
+    }
+
+    private void writeNdjson(OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+
+            long lastId = 0;
+            List<Object[]> rows;
+            do {
+                rows = nextChunk(lastId);
+                for (Object[] row : rows) {
+                    generator.writeStartObject();
+                    for (int i = 0; i < row.length; i++) {
+                        generator.writeFieldName(COLUMNS[i]);
+                        if (row[i] == null || row[i] instanceof Number) {
+                            generator.writeObject(row[i]);
+                        } else {
+                            generator.writeString(row[i].toString());
+                        }
+                    }
+                    generator.writeEndObject();
+                    lastId = (Long) row[0];
+                }
+                generator.flush();
+            } while (rows.size() == chunkSize);
+            generator.writeRaw('\n');
+        }
+    }
+
+    private List<Object[]> nextChunk(long lastId) {
+        // 每块之间清空持久化上下文，保证千万行导出时堆占用恒定
+        entityManager.clear();
+        return query(lastId, chunkSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> query(long lastId, int maxResults) {
+        return entityManager.createQuery(CHUNK_QUERY)
+                .setParameter("lastId", lastId)
+                .setMaxResults(maxResults)
+                .setHint("org.hibernate.readOnly", true)
+                .setHint("org.hibernate.fetchSize", maxResults)
+                .getResultList();
+    }
+
+    // 用户填写的文本以 = + - @ 或制表符、回车开头时，表格软件会当成公式执行，前面加单引号按文本处理
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (!(value instanceof Number) && !text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
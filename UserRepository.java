@@ -1,6 +1,7 @@
 package com.klpbbs.repository;
 
 import com.klpbbs.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -8,6 +9,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -26,6 +31,10 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
 
     Boolean existsByPhone(String phone);
 
+    boolean existsByEmailAndIdNot(String email, Long id);
+
+    boolean existsByPhoneAndIdNot(String phone, Long id);
+
     @Query("SELECT u FROM User u WHERE u.id = :userId")
     Optional<User> findUserWithRolesAndPermissionsById(@Param("userId") Long userId);
 
@@ -33,6 +42,22 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
     @Query("UPDATE User u SET u.password = :password WHERE u.id = :userId")
     int updatePassword(@Param("userId") Long userId, @Param("password") String password);
 
+    @Modifying
+    @Query("UPDATE User u SET u.resetToken = :resetToken, u.resetTokenExpiry = :expiry WHERE u.id = :userId")
+    int updateResetToken(@Param("userId") Long userId, @Param("resetToken") String resetToken, @Param("expiry") LocalDate expiry);
+
+    // 带上令牌做条件更新，同一个令牌只能用一次
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password, u.resetToken = NULL, u.resetTokenExpiry = NULL "
+            + "WHERE u.id = :userId AND u.resetToken = :resetToken")
+    int resetPassword(@Param("userId") Long userId, @Param("resetToken") String resetToken, @Param("password") String password);
+
+    @Modifying
+    @Query("UPDATE User u SET u.nickname = COALESCE(:nickname, u.nickname), u.email = COALESCE(:email, u.email), "
+            + "u.phone = COALESCE(:phone, u.phone), u.updateTime = :updateTime WHERE u.id = :userId")
+    int updateProfile(@Param("userId") Long userId, @Param("nickname") String nickname, @Param("email") String email,
+                      @Param("phone") String phone, @Param("updateTime") LocalDateTime updateTime);
+
     @Modifying
     @Query("UPDATE User u SET u.status = :status WHERE u.id = :userId")
     int updateUserStatus(@Param("userId") Long userId, @Param("status") User.UserStatus status);
@@ -43,24 +68,36 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
     @Query("SELECT u.id FROM User u WHERE u.username LIKE %:keyword% OR u.nickname LIKE %:keyword% OR u.email LIKE %:keyword% OR u.phone LIKE %:keyword%")
     Set<Long> searchUserIdsByKeyword(@Param("keyword") String keyword);
 
-    @Query("SELECT u.id FROM User u WHERE u.id IN :userIds ORDER BY u.level DESC, u.points DESC, u.reputation DESC")
-    Set<Long> sortUsersByLevelAndPointsAndReputation(@Param("userIds") Set<Long> userIds);
+    @Query("SELECT u.id, u.username, u.nickname, u.email, u.phone FROM User u WHERE u.id > :lastId ORDER BY u.id")
+    List<Object[]> findSearchFieldsAfter(@Param("lastId") Long lastId, Pageable pageable);
 
-    @Query("SELECT u.id FROM User u WHERE u.id IN :userIds ORDER BY u.postsCount DESC, u.commentsCount DESC, u.likesCount DESC")
-    Set<Long> sortUsersByActivity(@Param("userIds") Set<Long> userIds);
+    @Query("SELECT u.id, u.username, u.nickname, u.email, u.phone FROM User u WHERE u.id = :userId")
+    List<Object[]> findSearchFieldsById(@Param("userId") Long userId);
 
-    @Query("SELECT u.id FROM User u WHERE u.id IN :userIds ORDER BY u.followersCount DESC, u.followingsCount ASC")
-    Set<Long> sortUsersBySocialInfluence(@Param("userIds") Set<Long> userIds);
+    @Query("SELECT u.id, u.username, u.nickname, u.email, u.phone FROM User u WHERE u.updateTime > :updateTime")
+    List<Object[]> findSearchFieldsUpdatedAfter(@Param("updateTime") LocalDateTime updateTime);
 
-    @Query("SELECT u.id FROM User u WHERE u.id IN :userIds ORDER BY u.createTime DESC")
-    Set<Long> sortUsersByRegistrationTime(@Param("userIds") Set<Long> userIds);
+    @Query("SELECT u.id, u.level, u.points, u.reputation, u.postsCount, u.commentsCount, u.likesCount, "
+            + "u.followersCount, u.followingsCount, u.createTime, u.lastLoginTime, u.updateTime "
+            + "FROM User u WHERE u.id > :lastId ORDER BY u.id")
+    List<Object[]> findRankingFieldsAfter(@Param("lastId") Long lastId, Pageable pageable);
 
-    @Query("SELECT u.id FROM User u WHERE u.id IN :userIds ORDER BY u.lastLoginTime DESC")
-    Set<Long> sortUsersByLastLoginTime(@Param("userIds") Set<Long> userIds);
+    @Query("SELECT u.id, u.level, u.points, u.reputation, u.postsCount, u.commentsCount, u.likesCount, "
+            + "u.followersCount, u.followingsCount, u.createTime, u.lastLoginTime, u.updateTime "
+            + "FROM User u WHERE u.id = :userId")
+    List<Object[]> findRankingFieldsById(@Param("userId") Long userId);
 
-    @Query("SELECT u.id FROM User u WHERE u.id IN :userIds ORDER BY u.updateTime DESC")
-    Set<Long> sortUsersByUpdateTime(@Param("userIds") Set<Long> userIds);
+    @Query("SELECT u.id, u.level, u.points, u.reputation, u.postsCount, u.commentsCount, u.likesCount, "
+            + "u.followersCount, u.followingsCount, u.createTime, u.lastLoginTime, u.updateTime "
+            + "FROM User u WHERE u.updateTime > :updateTime")
+    List<Object[]> findRankingFieldsUpdatedAfter(@Param("updateTime") LocalDateTime updateTime);
 
     @Query("SELECT COUNT(u.id) FROM User u WHERE u.status = 'ACTIVE'")
     long countActiveUsers();
+
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    @Query("SELECT u.username FROM User u WHERE u.id IN :userIds")
+    List<String> findUsernamesByIdIn(@Param("userIds") Collection<Long> userIds);
 }
\ No newline at end of file
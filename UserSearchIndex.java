@@ -0,0 +1,288 @@
+package com.klpbbs.search;
+
+import com.klpbbs.repository.UserRepository;
+import com.klpbbs.support.AfterCommit;
+import com.klpbbs.support.SortedLongArray;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 管理后台用户搜索索引：按字段的有序表做精确和前缀匹配，三元组倒排做子串匹配
+@Component
+public class UserSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    // 字段依次为 username、nickname、email、phone，顺序即同级匹配时的优先级
+    private static final int FIELD_COUNT = 4;
+
+    private static final int GRAM = 3;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${klpbbs.user-search.warm-page-size:5000}")
+    private int warmPageSize;
+
+    @Value("${klpbbs.user-search.sync-interval-ms:60000}")
+    private long syncIntervalMs;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private final Map<Long, String[]> users = new HashMap<>();
+    private final List<NavigableMap<String, SortedLongArray>> fieldValues = new ArrayList<>(FIELD_COUNT);
+    private final Map<String, SortedLongArray> trigrams = new HashMap<>();
+
+    private volatile boolean ready;
+    private volatile LocalDateTime lastSync;
+    private ScheduledExecutorService scheduler;
+
+    public UserSearchIndex() {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            fieldValues.add(new TreeMap<>());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::warm);
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void indexAfterCommit(Long userId, String username, String nickname, String email, String phone) {
+        String[] values = {normalize(username), normalize(nickname), normalize(email), normalize(phone)};
+        AfterCommit.run(() -> put(userId, values));
+    }
+
+    public void removeAfterCommit(Long userId) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                removeLocked(userId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // 排序：精确匹配 > 前缀匹配 > 子串匹配，同级按字段优先级，子串匹配优先返回新用户
+    public List<Long> search(String keyword, int limit) {
+        String query = normalize(keyword);
+        Set<Long> result = new LinkedHashSet<>();
+        if (query == null || limit <= 0) {
+            return new ArrayList<>(result);
+        }
+
+        lock.readLock().lock();
+        try {
+            for (int field = 0; field < FIELD_COUNT && result.size() < limit; field++) {
+                addAll(fieldValues.get(field).get(query), result, limit);
+            }
+            for (int field = 0; field < FIELD_COUNT && result.size() < limit; field++) {
+                for (SortedLongArray ids : fieldValues.get(field).subMap(query, false, query + Character.MAX_VALUE, false).values()) {
+                    addAll(ids, result, limit);
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                }
+            }
+            if (result.size() < limit && query.length() >= GRAM) {
+                SortedLongArray candidates = candidates(query);
+                for (int i = candidates == null ? -1 : candidates.size() - 1; i >= 0 && result.size() < limit; i--) {
+                    long userId = candidates.get(i);
+                    if (!result.contains(userId) && containsSubstring(users.get(userId), query)) {
+                        result.add(userId);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ArrayList<>(result);
+    }
+
+    private SortedLongArray candidates(String query) {
+        List<SortedLongArray> lists = new ArrayList<>();
+        for (String gram : grams(query)) {
+            SortedLongArray ids = trigrams.get(gram);
+            if (ids == null) {
+                return null;
+            }
+            lists.add(ids);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        SortedLongArray result = lists.get(0);
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result = result.intersect(lists.get(i));
+        }
+        return result;
+    }
+
+    private void warm() {
+        try {
+            lastSync = LocalDateTime.now();
+            long lastId = 0;
+            List<Object[]> rows;
+            do {
+                rows = userRepository.findSearchFieldsAfter(lastId, PageRequest.of(0, warmPageSize));
+                for (Object[] row : rows) {
+                    lastId = (Long) row[0];
+                    putIfAbsent(lastId, row);
+                }
+            } while (rows.size() == warmPageSize);
+            ready = true;
+            log.info("User search index warmed with {} users", users.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to warm user search index, search falls back to database", e);
+        }
+    }
+
+    // 兜底同步没有经过注册入口的资料修改
+    private void syncQuietly() {
+        if (!ready) {
+            return;
+        }
+        try {
+            LocalDateTime since = lastSync.minusSeconds(5);
+            lastSync = LocalDateTime.now();
+            for (Object[] row : userRepository.findSearchFieldsUpdatedAfter(since)) {
+                put((Long) row[0], new String[]{normalize((String) row[1]), normalize((String) row[2]),
+                        normalize((String) row[3]), normalize((String) row[4])});
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to sync user search index", e);
+        }
+    }
+
+    private void putIfAbsent(Long userId, Object[] row) {
+        lock.writeLock().lock();
+        try {
+            if (!users.containsKey(userId)) {
+                putLocked(userId, new String[]{normalize((String) row[1]), normalize((String) row[2]),
+                        normalize((String) row[3]), normalize((String) row[4])});
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(Long userId, String[] values) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(userId);
+            putLocked(userId, values);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putLocked(long userId, String[] values) {
+        users.put(userId, values);
+        Set<String> userGrams = new LinkedHashSet<>();
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (values[field] != null) {
+                fieldValues.get(field).computeIfAbsent(values[field], v -> new SortedLongArray(1)).add(userId);
+                userGrams.addAll(grams(values[field]));
+            }
+        }
+        for (String gram : userGrams) {
+            trigrams.computeIfAbsent(gram, g -> new SortedLongArray(1)).add(userId);
+        }
+    }
+
+    private void removeLocked(long userId) {
+        String[] previous = users.remove(userId);
+        if (previous == null) {
+            return;
+        }
+        Set<String> userGrams = new LinkedHashSet<>();
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (previous[field] != null) {
+                removeFrom(fieldValues.get(field), previous[field], userId);
+                userGrams.addAll(grams(previous[field]));
+            }
+        }
+        for (String gram : userGrams) {
+            removeFrom(trigrams, gram, userId);
+        }
+    }
+
+    private static void removeFrom(Map<String, SortedLongArray> index, String key, long userId) {
+        SortedLongArray ids = index.get(key);
+        if (ids != null && ids.remove(userId) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static void addAll(SortedLongArray ids, Set<Long> result, int limit) {
+        if (ids == null) {
+            return;
+        }
+        for (int i = ids.size() - 1; i >= 0 && result.size() < limit; i--) {
+            result.add(ids.get(i));
+        }
+    }
+
+    private static boolean containsSubstring(String[] values, String query) {
+        if (values == null) {
+            return false;
+        }
+        for (String value : values) {
+            if (value != null && value.contains(query)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> grams(String value) {
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim().toLowerCase(Locale.ROOT);
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
@@ -3,10 +3,14 @@ package com.klpbbs.service;
 import com.klpbbs.model.User;
 import com.klpbbs.model.enums.Role;
 import com.klpbbs.repository.UserRepository;
+import com.klpbbs.search.UserSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -15,6 +19,15 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
     public User registerUser(String username, String email, String password) {
         User user = new User();
         user.setUsername(username);
@@ -22,11 +35,97 @@ public class UserService {
         user.setPassword(password);
         user.setRole(Role.ADMIN); // 默认角色为管理员
         userRepository.save(user);
+        userSearchIndex.indexAfterCommit(user.getId(), user.getUsername(), null, user.getEmail(), null);
+        leaderboardService.refreshAfterCommit(user.getId());
+        entityCacheService.evictUser(user);
         return user;
     }
 
+    // 只改传入的字段；邮箱或手机号已被别人占用时返回 false
+    // 修改资料后在事务提交时更新搜索索引，旧的邮箱、手机号缓存键一并失效
+    @Transactional
+    public boolean updateProfile(Long userId, String nickname, String email, String phone) {
+        User cached = entityCacheService.getUser(userId, () -> userRepository.findById(userId).orElse(null));
+        if (cached == null) {
+            throw new RuntimeException("User not found");
+        }
+        if ((email != null && userRepository.existsByEmailAndIdNot(email, userId))
+                || (phone != null && userRepository.existsByPhoneAndIdNot(phone, userId))) {
+            return false;
+        }
+        if (userRepository.updateProfile(userId, nickname, email, phone, LocalDateTime.now()) == 0) {
+            throw new RuntimeException("User not found");
+        }
+        for (Object[] row : userRepository.findSearchFieldsById(userId)) {
+            userSearchIndex.indexAfterCommit(userId, (String) row[1], (String) row[2], (String) row[3], (String) row[4]);
+        }
+        entityCacheService.evictUser(cached);
+        return true;
+    }
+
     public User findByUsername(String username) {
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        User user = entityCacheService.getUserByUsername(username, () -> userRepository.findByUsername(username).orElse(null));
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
+        return user;
+    }
+
+    public User findByEmail(String email) {
+        User user = entityCacheService.getUserByEmail(email, () -> userRepository.findByEmail(email).orElse(null));
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
+        return user;
+    }
+
+    public User findByPhone(String phone) {
+        User user = entityCacheService.getUserByPhone(phone, () -> userRepository.findByPhone(phone).orElse(null));
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
+        return user;
+    }
+
+    public User findById(Long userId) {
+        User user = entityCacheService.getUser(userId, () -> userRepository.findById(userId).orElse(null));
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
+        return user;
+    }
+
+    public List<Long> searchUsersByKeyword(String keyword, int limit) {
+        // 索引还在预热时退回数据库查询
+        if (!userSearchIndex.isReady()) {
+            List<Long> userIds = new ArrayList<>(userRepository.searchUserIdsByKeyword(keyword));
+            int max = Math.max(0, limit);
+            return userIds.size() > max ? userIds.subList(0, max) : userIds;
+        }
+        return userSearchIndex.search(keyword, limit);
+    }
+
+    public List<Long> sortUsersByLevelAndPointsAndReputation(int offset, int limit) {
+        return leaderboardService.top(LeaderboardKey.LEVEL_POINTS_REPUTATION, offset, limit);
+    }
+
+    public List<Long> sortUsersByActivity(int offset, int limit) {
+        return leaderboardService.top(LeaderboardKey.ACTIVITY, offset, limit);
+    }
+
+    public List<Long> sortUsersBySocialInfluence(int offset, int limit) {
+        return leaderboardService.top(LeaderboardKey.SOCIAL_INFLUENCE, offset, limit);
+    }
+
+    public List<Long> sortUsersByRegistrationTime(int offset, int limit) {
+        return leaderboardService.top(LeaderboardKey.REGISTRATION_TIME, offset, limit);
+    }
+
+    public List<Long> sortUsersByLastLoginTime(int offset, int limit) {
+        return leaderboardService.top(LeaderboardKey.LAST_LOGIN_TIME, offset, limit);
+    }
+
+    public List<Long> sortUsersByUpdateTime(int offset, int limit) {
+        return leaderboardService.top(LeaderboardKey.UPDATE_TIME, offset, limit);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package com.klpbbs.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+// 虚拟线程模式，klpbbs.virtual-threads.enabled=true 时生效，默认关闭以便线上按实例对比：
+// Tomcat 请求线程和 @Async 任务改为每个任务一个虚拟线程，数据源外面加一道连接闸门，并用 JFR 报告载体线程被钉住的位置
+// BCrypt 和各个后台 scheduler 仍在各自的平台线程池里运行
+@Configuration
+@ConditionalOnProperty(name = "klpbbs.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Bean(name = "applicationTaskExecutor")
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    // 许可数默认等于连接池大小，这样排队发生在闸门上，可以限制排队长度并快速失败
+    @Bean
+    public static BeanPostProcessor connectionLimitingDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource) || bean instanceof ConnectionLimitingDataSource) {
+                    return bean;
+                }
+                int poolSize = bean instanceof HikariDataSource ? ((HikariDataSource) bean).getMaximumPoolSize() : 10;
+                int maxConnections = environment.getProperty("klpbbs.virtual-threads.max-db-connections", Integer.class, poolSize);
+                int maxWaiters = environment.getProperty("klpbbs.virtual-threads.max-db-waiters", Integer.class, maxConnections * 50);
+                long timeoutMs = environment.getProperty("klpbbs.virtual-threads.db-acquire-timeout-ms", Long.class, 3000L);
+                if (maxConnections > poolSize) {
+                    log.warn("klpbbs.virtual-threads.max-db-connections ({}) exceeds the connection pool size ({})", maxConnections, poolSize);
+                }
+                log.info("Limiting data source {} to {} concurrent connections and {} waiters", beanName, maxConnections, maxWaiters);
+                return new ConnectionLimitingDataSource((DataSource) bean, maxConnections, maxWaiters, timeoutMs);
+            }
+        };
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(Environment environment) {
+        long thresholdMs = environment.getProperty("klpbbs.virtual-threads.pinned-threshold-ms", Long.class, 20L);
+        return new VirtualThreadPinningMonitor(Duration.ofMillis(thresholdMs));
+    }
+}